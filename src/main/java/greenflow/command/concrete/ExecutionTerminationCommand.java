@@ -23,7 +23,6 @@ import org.springframework.stereotype.Component;
 
 import greenflow.command.Command;
 import greenflow.command.CommandResult;
-import greenflow.exception.WorkflowExecutionTerminationException;
 
 @Component
 @Scope("prototype")
@@ -34,7 +33,9 @@ public class ExecutionTerminationCommand extends Command<String> {
 	public CommandResult<String> execute() {
 		logger.debug("Command: done (" + getSymbolicName() + ")");
 
-		throw new WorkflowExecutionTerminationException(getWrapperWorkUnit().getTargetContainer().getBreadcrumbId());
+		getWrapperWorkUnit().getWorkflow().setExecutionTerminationPoint(getWrapperWorkUnit().getTargetContainer().getBreadcrumbId());
+
+		return null;
 	}
 
 	@Override
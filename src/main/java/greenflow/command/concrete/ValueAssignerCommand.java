@@ -38,7 +38,7 @@ public class ValueAssignerCommand extends Command<Object>
 		TransactionData transactionData = getWrapperWorkUnit().getWorkflow().getWorkflowContext().getTransaction().getTransactionData();
 		logger.debug("Command access to workflow contxet: Transaction ordinal: " + getWrapperWorkUnit().getWorkflow().getWorkflowContext().getTransaction().getTransactionOrdinal());
 
-		Object value = getWrapperWorkUnit().lookUpVariableValue(getParameters().get(1)).toString();
+		Object value = getWrapperWorkUnit().lookUpVariableValue(getParameters().get(1));
 
 		final Object previousValue = getWrapperWorkUnit().lookUpVariableScopeWorkUnit(getParameters().get(0)).getVariables().put(getParameters().get(0), value);
 
@@ -16,10 +16,8 @@
 
 package greenflow.container;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import greenflow.container.interaction.ConcreteContainerElementAdapter;
 import greenflow.container.interaction.TargetContainerElement;
@@ -31,12 +29,16 @@ public class GenericContainerNode<T>  {
 
 	private Map<T, GenericContainerNode<T>> locate;
 
+	private Map<String, GenericContainerNode<T>> locateBreadcrumbId;
+
 	private Tree<T> coreTree;
+
+	private String breadcrumbId;
 
 	public GenericContainerNode() {}
 
 	public TargetContainerElement<T> insertRoot(T head) {
-		setLocate(new HashMap<T, GenericContainerNode<T>>());
+		setLocate(new ConcurrentHashMap<T, GenericContainerNode<T>>());
 		getLocate().put(head, this);
 
 		setCoreTree(new Tree<T>(head));
@@ -45,7 +47,10 @@ public class GenericContainerNode<T>  {
 
 		concreteContainerAdapter.setAdaptee(this);
 
-		setLocateId(new HashMap<Long, GenericContainerNode<T>>());
+		setLocateId(new ConcurrentHashMap<Long, GenericContainerNode<T>>());
+
+		setLocateBreadcrumbId(new ConcurrentHashMap<String, GenericContainerNode<T>>());
+		setBreadcrumbId("1");
 
 		return concreteContainerAdapter;
 	}
@@ -65,6 +70,9 @@ public class GenericContainerNode<T>  {
 		interfacedContainer.setLocate(getLocate());
 		interfacedContainer.getLocate().put(leaf, interfacedContainer);
 
+		interfacedContainer.setLocateBreadcrumbId(getLocateBreadcrumbId());
+		interfacedContainer.setBreadcrumbId(getBreadcrumbId() + "." + getCoreTree().getSubTrees().size());
+
 		return concreteContainerAdapter;
 	}
 
@@ -76,19 +84,17 @@ public class GenericContainerNode<T>  {
 		return getLocateId().get(containerId);
 	}
 
+	public GenericContainerNode<T> getTreeByBreadcrumbId(String breadcrumbId) {
+		return getLocateBreadcrumbId().get(breadcrumbId);
+	}
+
 	public String getBreadcrumbId() {
-		if (getCoreTree().getParent() != null) {
-			List<Tree<T>> list = new ArrayList<Tree<T>>(getCoreTree().getParent().getSubTrees());
-
-			int index = list.indexOf(getCoreTree());
-
-			if (index != -1) {
-				return getLocate().get(getCoreTree().getParent().getHead()).getBreadcrumbId() +  "." + (index + 1);
-			}
+		return breadcrumbId;
+	}
 
-			return "";
-		}
-		else return "1";
+	private void setBreadcrumbId(String breadcrumbId) {
+		this.breadcrumbId = breadcrumbId.intern();
+		getLocateBreadcrumbId().put(this.breadcrumbId, this);
 	}
 
 	@Override
@@ -127,4 +133,12 @@ public class GenericContainerNode<T>  {
 	public void setLocate(Map<T, GenericContainerNode<T>> locate) {
 		this.locate = locate;
 	}
+
+	public Map<String, GenericContainerNode<T>> getLocateBreadcrumbId() {
+		return locateBreadcrumbId;
+	}
+
+	public void setLocateBreadcrumbId(Map<String, GenericContainerNode<T>> locateBreadcrumbId) {
+		this.locateBreadcrumbId = locateBreadcrumbId;
+	}
 }
\ No newline at end of file
@@ -18,7 +18,8 @@ package greenflow.container;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Tree<T> {
   private T head;
@@ -27,10 +28,18 @@ public class Tree<T> {
 
   private Tree<T> parent = null;
 
-  private HashMap<T, Tree<T>> locate = new HashMap<T, Tree<T>>();
+  private Map<T, Tree<T>> locate;
 
   public Tree(T head) {
     this.head = head;
+    this.locate = new ConcurrentHashMap<T, Tree<T>>();
+    locate.put(head, this);
+  }
+
+  private Tree(T head, Tree<T> parent) {
+    this.head = head;
+    this.parent = parent;
+    this.locate = parent.locate;
     locate.put(head, this);
   }
 
@@ -43,11 +52,8 @@ public class Tree<T> {
   }
 
   public Tree<T> addLeaf(T leaf) {
-    Tree<T> t = new Tree<T>(leaf);
+    Tree<T> t = new Tree<T>(leaf, this);
     leafs.add(t);
-    t.parent = this;
-    t.locate = this.locate;
-    locate.put(leaf, t);
     return t;
   }
 
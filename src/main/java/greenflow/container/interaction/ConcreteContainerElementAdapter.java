@@ -19,9 +19,7 @@ package greenflow.container.interaction;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Triple;
@@ -88,26 +86,18 @@ public class ConcreteContainerElementAdapter<T> implements TargetContainerElemen
 
 	@Override
 	public Collection<Triple<T, T, Long>> getPaths() {
-		return getPaths(getAdaptee().getCoreTree(), new HashSet<Triple<T, T, Long>>());
+		return getPaths(getAdaptee().getCoreTree(), new ArrayList<Triple<T, T, Long>>());
 	}
 
 	private Collection<Triple<T, T, Long>> getPaths(Tree<T> tree, Collection<Triple<T, T, Long>> paths) {
-		Set<Triple<T, T, Long>> tempPaths = new HashSet<Triple<T, T, Long>>();
+		long length = 0;
 
-		paths.add(new ImmutableTriple<T, T, Long>(tree.getHead(), tree.getHead(), 0l));
-
-		if (tree.getParent() != null) {
-			for (Triple<T, T, Long> path : paths) {
-				if (path.getMiddle() == tree.getParent().getHead()) {
-					tempPaths.add(new ImmutableTriple<T, T, Long>(path.getLeft(), tree.getHead(), path.getRight()+1));
-				}
-			}
+		for (Tree<T> ancestor = tree; ancestor != null; ancestor = ancestor.getParent()) {
+			paths.add(new ImmutableTriple<T, T, Long>(ancestor.getHead(), tree.getHead(), length++));
 		}
 
-		paths.addAll(tempPaths);
-
 		for (Tree<T> subTree : tree.getSubTrees()) {
-			paths.addAll(getPaths(subTree, paths));
+			getPaths(subTree, paths);
 		}
 
 		return paths;
@@ -115,7 +105,9 @@ public class ConcreteContainerElementAdapter<T> implements TargetContainerElemen
 
 	@Override
 	public T getParent() {
-		return getAdaptee().getCoreTree().getParent().getHead();
+		Tree<T> parent = getAdaptee().getCoreTree().getParent();
+
+		return parent != null ? parent.getHead() : null;
 	}
 
 	@Override
@@ -16,6 +16,9 @@
 
 package greenflow.conversation;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public abstract class Conversation
 {
 	private long id;
@@ -24,6 +27,8 @@ public abstract class Conversation
 
 	abstract protected Transaction startTransaction(TransactionData transactionData, boolean workflowStatePersisted);
 
+	abstract public CompletableFuture<List<TransactionResult<?>>> submitTransaction(TransactionData transactionData);
+
 	public Transaction startTransaction(TransactionData transactionData)
 	{
 		return startTransaction(transactionData, true);
@@ -0,0 +1,96 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.conversation;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import greenflow.utilities.GlobalWorkflowSettingsUtilities;
+
+@Service
+public class ConversationLockManager
+{
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
+
+	private Map<Long, ConversationLock> conversationLocks = new ConcurrentHashMap<Long, ConversationLock>();
+
+	private Set<Long> lockedConversations = ConcurrentHashMap.<Long>newKeySet();
+
+	public boolean acquire(long conversationId)
+	{
+		ConversationLock conversationLock = conversationLocks.compute(conversationId, (id, lock) -> (lock != null ? lock : new ConversationLock()).reference());
+
+		try
+		{
+			if (conversationLock.semaphore.tryAcquire(globalWorkflowSettings.getConversationLockTimeout(), TimeUnit.MILLISECONDS))
+			{
+				lockedConversations.add(conversationId);
+
+				return true;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		dereference(conversationId);
+
+		return false;
+	}
+
+	public void release(long conversationId)
+	{
+		if (lockedConversations.remove(conversationId))
+		{
+			conversationLocks.get(conversationId).semaphore.release();
+
+			dereference(conversationId);
+		}
+	}
+
+	public boolean isLocked(long conversationId)
+	{
+		return lockedConversations.contains(conversationId);
+	}
+
+	private void dereference(long conversationId)
+	{
+		conversationLocks.computeIfPresent(conversationId, (id, lock) -> (--lock.references > 0 ? lock : null));
+	}
+
+	private static class ConversationLock
+	{
+		private final Semaphore semaphore = new Semaphore(1);
+
+		private int references;
+
+		private ConversationLock reference()
+		{
+			references++;
+
+			return this;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,253 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.conversation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import greenflow.exception.ConversationException;
+import greenflow.utilities.GlobalWorkflowSettingsUtilities;
+
+@Service
+public class ConversationMailbox
+{
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
+
+	private ConcurrentMap<Long, Mailbox> mailboxes = new ConcurrentHashMap<Long, Mailbox>();
+
+	private AtomicInteger queueDepth = new AtomicInteger();
+
+	private ExecutorService executor;
+
+	@PostConstruct
+	protected void init()
+	{
+		executor = Executors.newFixedThreadPool(Math.max(1, globalWorkflowSettings.getConversationMailboxThreads()), new ThreadFactoryBuilder().setNameFormat("conversation-mailbox-%d").setDaemon(true).build());
+	}
+
+	@PreDestroy
+	public void close()
+	{
+		executor.shutdown();
+
+		try
+		{
+			executor.awaitTermination(30, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public CompletableFuture<List<TransactionResult<?>>> submit(final Conversation conversation, final TransactionData transactionData)
+	{
+		PendingTransaction task = new PendingTransaction(conversation, transactionData);
+
+		while (true)
+		{
+			Mailbox mailbox = mailboxes.computeIfAbsent(conversation.getId(), id -> new Mailbox());
+
+			List<PendingTransaction> rejectedTasks = null;
+
+			synchronized (mailbox)
+			{
+				if (mailbox.retired)
+				{
+					continue;
+				}
+
+				if (mailbox.pending.size() >= globalWorkflowSettings.getConversationMailboxCapacity())
+				{
+					throw new ConversationException("Transaction queue of conversation is full. Conversation id: " + conversation.getId() + ", Queue depth: " + mailbox.pending.size() + ".");
+				}
+
+				mailbox.pending.add(task);
+				queueDepth.incrementAndGet();
+
+				if (!mailbox.draining)
+				{
+					mailbox.draining = true;
+
+					rejectedTasks = schedule(conversation.getId(), mailbox);
+				}
+			}
+
+			reject(conversation.getId(), rejectedTasks);
+
+			return task.outcome;
+		}
+	}
+
+	public int getQueueDepth()
+	{
+		return queueDepth.get();
+	}
+
+	public int getQueueDepth(long conversationId)
+	{
+		Mailbox mailbox = mailboxes.get(conversationId);
+
+		if (mailbox == null)
+		{
+			return 0;
+		}
+
+		synchronized (mailbox)
+		{
+			return mailbox.pending.size();
+		}
+	}
+
+	private List<PendingTransaction> schedule(final long conversationId, final Mailbox mailbox)
+	{
+		try
+		{
+			executor.execute(() -> runNext(conversationId, mailbox));
+
+			return null;
+		}
+		catch (RejectedExecutionException e)
+		{
+			List<PendingTransaction> rejectedTasks = new ArrayList<PendingTransaction>(mailbox.pending);
+
+			mailbox.pending.clear();
+			queueDepth.addAndGet(-rejectedTasks.size());
+
+			mailbox.draining = false;
+			mailbox.retired = true;
+
+			mailboxes.remove(conversationId, mailbox);
+
+			return rejectedTasks;
+		}
+	}
+
+	private void reject(long conversationId, List<PendingTransaction> rejectedTasks)
+	{
+		if (rejectedTasks == null)
+		{
+			return;
+		}
+
+		for (PendingTransaction rejectedTask : rejectedTasks)
+		{
+			rejectedTask.outcome.completeExceptionally(new ConversationException("Conversation mailbox is closed. Conversation id: " + conversationId + "."));
+		}
+	}
+
+	private void runNext(long conversationId, Mailbox mailbox)
+	{
+		PendingTransaction task;
+
+		List<PendingTransaction> rejectedTasks = null;
+
+		synchronized (mailbox)
+		{
+			task = mailbox.pending.poll();
+		}
+
+		queueDepth.decrementAndGet();
+
+		try
+		{
+			task.run();
+		}
+		finally
+		{
+			synchronized (mailbox)
+			{
+				if (mailbox.pending.isEmpty())
+				{
+					mailbox.draining = false;
+					mailbox.retired = true;
+
+					mailboxes.remove(conversationId, mailbox);
+				}
+				else
+				{
+					rejectedTasks = schedule(conversationId, mailbox);
+				}
+			}
+
+			reject(conversationId, rejectedTasks);
+		}
+	}
+
+	private static class PendingTransaction
+	{
+		private final Conversation conversation;
+
+		private final TransactionData transactionData;
+
+		private final CompletableFuture<List<TransactionResult<?>>> outcome = new CompletableFuture<List<TransactionResult<?>>>();
+
+		private PendingTransaction(Conversation conversation, TransactionData transactionData)
+		{
+			this.conversation = conversation;
+			this.transactionData = transactionData;
+		}
+
+		private void run()
+		{
+			try
+			{
+				Transaction transaction = conversation.startTransaction(transactionData);
+
+				outcome.complete(transaction != null ? transaction.execute() : null);
+			}
+			catch (RuntimeException e)
+			{
+				outcome.completeExceptionally(e);
+			}
+			catch (Error e)
+			{
+				outcome.completeExceptionally(e);
+
+				throw e;
+			}
+		}
+	}
+
+	private static class Mailbox
+	{
+		private Queue<PendingTransaction> pending = new ArrayDeque<PendingTransaction>();
+
+		private boolean draining;
+
+		private boolean retired;
+	}
+}
\ No newline at end of file
@@ -17,31 +17,40 @@
 package greenflow.conversation;
 
 import com.google.common.collect.ImmutableMap;
-import org.apache.commons.lang3.tuple.ImmutableTriple;
-import org.apache.commons.lang3.tuple.Triple;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.ResultSetExtractor;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import greenflow.context.WorkflowContext;
 import greenflow.exception.ConversationException;
-import greenflow.persistence.WorkflowConfigurationDao;
+import greenflow.persistence.IdBlockAllocator;
+import greenflow.persistence.TypedValue;
+import greenflow.persistence.VariableValueCodec;
+import greenflow.persistence.WorkflowDefinitionCache;
+import greenflow.persistence.WorkflowDefinitionRepository;
 import greenflow.utilities.DefaultServiceLocator;
 import greenflow.utilities.EnhancedResultSet;
+import greenflow.utilities.GlobalWorkflowSettingsUtilities;
 import greenflow.workflow.Workflow;
 import greenflow.workunit.WorkUnit;
 
+import java.sql.CallableStatement;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,7 +64,32 @@ public class ConversationPersistenceUtilities
 	private DefaultServiceLocator serviceLocator;
 
 	@Autowired
-	private WorkflowConfigurationDao workUnitConfigurationDao;
+	@Qualifier("workflowDefinitionRepository")
+	private WorkflowDefinitionRepository workflowDefinitionRepository;
+
+	@Autowired
+	private WorkflowDefinitionCache workflowDefinitionCache;
+
+	@Autowired
+	private IdBlockAllocator idBlockAllocator;
+
+	@Autowired
+	private ConversationStateStore conversationStateStore;
+
+	@Autowired
+	private TransactionGroupCommitter transactionGroupCommitter;
+
+	@Autowired
+	private ConversationLockManager conversationLockManager;
+
+	@Autowired
+	private WorkflowAffinityCache workflowAffinityCache;
+
+	@Autowired
+	private VariableValueCodec variableValueCodec;
+
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
 
 	@Autowired
 	private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
@@ -64,16 +98,18 @@ public class ConversationPersistenceUtilities
 	static final String assignedVariableTable = "Execution_Assigned_Variable";
 	static final String transactionTable = "Execution_Transaction";
 	static final String conversationTable = "Execution_Conversation";
+	static final String claimTransactionProcedure = "claim_transaction";
+
+	static final String saveAssignedVariableSql = "MERGE INTO " + assignedVariableTable + " AS t USING (VALUES(?, ?, ?, ?, CAST(? AS VARBINARY(65536)))) AS vals(x,y,w,v,z) "
+			+ "ON t.conversation_id = vals.x AND t.workunit_id = vals.y AND t.name=vals.w "
+			+ "WHEN MATCHED THEN UPDATE SET t.value_type=vals.v, t.value=vals.z "
+			+ "WHEN NOT MATCHED THEN INSERT VALUES vals.x, vals.y, vals.w, vals.v, vals.z";
 
 	public Conversation createConversationByWorkflowName(String workflowName)
 	{
 		Conversation conversation = null;
 
-		String sql;
-
-		sql = "select id from " + workflowTable + " where name = :value";
-
-		long workflowId = namedParameterJdbcTemplate.queryForObject(sql, ImmutableMap.<String, String>builder().put("value", workflowName).build(), Long.class);
+		long workflowId = workflowDefinitionRepository.retrieveWorkflowId(workflowName);
 
 		if (workflowId > 0)
 		{
@@ -91,12 +127,14 @@ public class ConversationPersistenceUtilities
 
 		if (workflowId > 0)
 		{
-			KeyHolder keyHolder = new GeneratedKeyHolder();
-			sql = "insert into " + conversationTable + " (workflow_id) values (:workflow_id)";
+			long conversationId = idBlockAllocator.nextId(IdBlockAllocator.conversationSequence);
 
-			namedParameterJdbcTemplate.update(sql, new MapSqlParameterSource(ImmutableMap.<String, Long>builder().put("workflow_id", workflowId).build()), keyHolder);
+			sql = "insert into " + conversationTable + " (id, workflow_id) select :id, w.id from " + workflowTable + " w where w.id = :workflow_id";
 
-			long conversationId = keyHolder.getKey().longValue();
+			if (namedParameterJdbcTemplate.update(sql, new MapSqlParameterSource(ImmutableMap.<String, Long>builder().put("id", conversationId).put("workflow_id", workflowId).build())) == 0)
+			{
+				return null;
+			}
 
 			conversation = serviceLocator.getInstance(DefaultConversation.class);
 
@@ -110,12 +148,29 @@ public class ConversationPersistenceUtilities
 
 	public Workflow getStatefulWorkflowByConversation(Conversation conversation, WorkflowContext workflowContext)
 	{
-		Workflow workflow = null;
-
-		workflow = workUnitConfigurationDao.retrieveConfigurationWorkflow(conversation.getWorkflowId(), workflowContext);
+		return getStatefulWorkflowByConversation(conversation, workflowContext, retrieveWorkflowExecutionState(conversation.getId()));
+	}
+
+	Workflow getStatefulWorkflowByConversation(Conversation conversation, WorkflowContext workflowContext, Map<Long, Map<String, Object>> workUnitVariableMap)
+	{
+		Workflow workflow = workflowDefinitionCache.getWorkflow(conversation.getWorkflowId(), workflowContext);
 
-		Map<Long, Map<String, Object>> workUnitVariableMap = retrieveWorkflowExecutionState(conversation);
+		restoreVariables(workflow, workUnitVariableMap);
 
+		return workflow;
+	}
+
+	Workflow getStatefulWorkflowByConversation(Conversation conversation, WorkflowContext workflowContext, String executionSuspensionPoint)
+	{
+		Workflow workflow = workflowDefinitionCache.getWorkflow(conversation.getWorkflowId(), workflowContext);
+
+		restoreVariables(workflow, decodeVariables(retrieveAssignedVariables(conversation.getId(), getLiveVariableScopeIds(workflow, executionSuspensionPoint))));
+
+		return workflow;
+	}
+
+	private void restoreVariables(Workflow workflow, Map<Long, Map<String, Object>> workUnitVariableMap)
+	{
 		logger.debug("Loading state into workflow...");
 
 		for (Map.Entry<Long, Map<String, Object>> workUnitVariables : workUnitVariableMap.entrySet())
@@ -130,22 +185,18 @@ public class ConversationPersistenceUtilities
 			}
 		}
 
-		for(WorkUnit workUnit : workflow.getAllWorkUnits())
-		{
-			if (workUnitVariableMap.get(workUnit.getId()) != null)
-			{
-				for (Map.Entry<String, Object> workUnitVariable : workUnitVariableMap.get(workUnit.getId()).entrySet())
-				{
-					workUnit.getVariables().put(workUnitVariable.getKey(), workUnitVariable.getValue());
-				}
-			}
-		}
-
-		return workflow;
+		workflow.getState().restoreVariables(workUnitVariableMap);
 	}
 
     public void saveTransactionState(Transaction transaction)
     {
+		if (globalWorkflowSettings.isExecutionStateHotTierEnabled())
+		{
+			conversationStateStore.saveTransactionState(transaction);
+
+			return;
+		}
+
     	String sqlString = "insert into " + transactionTable + " (conversation_id, ordinal, suspension_point) values (:conversation_id, :ordinal, :suspension_point)";
     	Map<String, Object> parameters = new HashMap<String, Object>();
 
@@ -157,47 +208,248 @@ public class ConversationPersistenceUtilities
 		namedParameterJdbcTemplate.update(sqlString, new MapSqlParameterSource(parameters));
     }
 
+    public void completeTransaction(Transaction transaction, boolean workflowStatePersisted)
+    {
+		workflowAffinityCache.evict(transaction.getConversationId());
+
+		try
+		{
+			if (globalWorkflowSettings.isExecutionStateHotTierEnabled() || !globalWorkflowSettings.isGroupCommitEnabled())
+			{
+				saveTransactionState(transaction);
+
+				if (workflowStatePersisted)
+				{
+					saveWorkflowState(transaction);
+				}
+
+				endTransaction(transaction);
+			}
+			else
+			{
+				List<Object[]> transactionRows = new ArrayList<Object[]>();
+
+				transactionRows.add(new Object[] {transaction.getConversationId(), transaction.getTransactionOrdinal(), transaction.getWorkflow().getExecutionSuspensionPoint()});
+
+				List<Object[]> prunedScopeRows = (workflowStatePersisted ? prunedScopeRows(transaction.getConversationId(), pruneVariableScopes(transaction)) : new ArrayList<Object[]>());
+				List<Object[]> variableRows = (workflowStatePersisted ? assignedVariableRows(transaction.getConversationId(), dirtyVariableValues(transaction)) : new ArrayList<Object[]>());
+
+				transactionGroupCommitter.commit(transactionRows, prunedScopeRows, variableRows, endTransactionRow(transaction));
+			}
+
+			if (workflowStatePersisted && transaction.getWorkflow().getExecutionSuspensionPoint() != null)
+			{
+				workflowAffinityCache.put(transaction.getConversationId(), transaction.getTransactionOrdinal(), transaction.getWorkflow());
+			}
+		}
+		catch (RuntimeException e)
+		{
+			releaseTransaction(transaction);
+
+			throw e;
+		}
+		finally
+		{
+			conversationLockManager.release(transaction.getConversationId());
+		}
+    }
+
+    public void abandonTransaction(Transaction transaction)
+    {
+		workflowAffinityCache.evict(transaction.getConversationId());
+
+		try
+		{
+			releaseTransaction(transaction);
+		}
+		finally
+		{
+			conversationLockManager.release(transaction.getConversationId());
+		}
+    }
+
+    private void releaseTransaction(Transaction transaction)
+    {
+		if (globalWorkflowSettings.isExecutionStateHotTierEnabled())
+		{
+			conversationStateStore.abandonTransaction(transaction);
+		}
+		else if (globalWorkflowSettings.isClusteringEnabled())
+		{
+			namedParameterJdbcTemplate.getJdbcOperations().update("update " + conversationTable + " set locked_transaction_ordinal = NULL, lease_expiry = NULL where id = ? and fencing_token = ?", transaction.getConversationId(), transaction.getFencingToken());
+		}
+    }
+
     public void saveWorkflowState(Transaction transaction)
+    {
+		Set<Long> prunedScopes = pruneVariableScopes(transaction);
+		Map<Long, Map<String, TypedValue>> workUnitVariableMap = dirtyVariableValues(transaction);
+
+		if (globalWorkflowSettings.isExecutionStateHotTierEnabled())
+		{
+			conversationStateStore.saveWorkflowState(transaction, prunedScopes, workUnitVariableMap);
+
+			return;
+		}
+
+		pruneAssignedVariables(prunedScopeRows(transaction.getConversationId(), prunedScopes));
+		saveAssignedVariables(assignedVariableRows(transaction.getConversationId(), workUnitVariableMap));
+    }
+
+    private Set<Long> pruneVariableScopes(Transaction transaction)
+    {
+		if (transaction.getWorkflow().getExecutionSuspensionPoint() == null)
+		{
+			return new HashSet<Long>();
+		}
+
+		pruneVariableScopes(transaction.getWorkflow());
+
+		return transaction.getWorkflow().getState().drainPrunedScopes();
+    }
+
+    private void pruneVariableScopes(Workflow workflow)
+    {
+		Set<Long> liveScopeIds = getLiveVariableScopeIds(workflow, workflow.getExecutionSuspensionPoint());
+
+		if (liveScopeIds != null)
+		{
+			workflow.getState().pruneScopes(liveScopeIds);
+		}
+    }
+
+    private Set<Long> getLiveVariableScopeIds(Workflow workflow, String executionSuspensionPoint)
+    {
+		if (!globalWorkflowSettings.isExecutionStatePruningEnabled() || executionSuspensionPoint == null)
+		{
+			return null;
+		}
+
+		return workflow.getLiveVariableScopeIds(executionSuspensionPoint);
+    }
+
+    private Map<Long, Map<String, TypedValue>> dirtyVariableValues(Transaction transaction)
     {
-		StringBuilder sql = new StringBuilder("MERGE INTO " + assignedVariableTable + " AS t USING (VALUES");
-		Map<String, Object> parameters = new HashMap<String, Object>();
+		Map<Long, Map<String, TypedValue>> workUnitVariableMap = new HashMap<Long, Map<String, TypedValue>>();
 
-		int i=0;
 		for (Map.Entry<WorkUnit, Set<String>> dirtyVariableSet : transaction.getWorkflow().getDirtyVariables().entrySet())
 		{
+			Map<String, TypedValue> workUnitVariables = new HashMap<String, TypedValue>();
+
 			for (String dirtyVariable : dirtyVariableSet.getValue())
 			{
-				sql.append("(:conversation_id").append(i).append(", :workunit_id").append(i).append(", :name").append(i).append(", :value").append(i).append("), ");
+				workUnitVariables.put(dirtyVariable, variableValueCodec.encode(dirtyVariable, transaction.getWorkflow().getVariables(dirtyVariableSet.getKey()).get(dirtyVariable)));
+			}
 
-				parameters.put("conversation_id" + i, transaction.getConversationId());
-				parameters.put("workunit_id" + i, dirtyVariableSet.getKey().getId());
-				parameters.put("name" + i, dirtyVariable);
+			workUnitVariableMap.put(dirtyVariableSet.getKey().getId(), workUnitVariables);
+		}
 
-				parameters.put("value" + i, dirtyVariableSet.getKey().getVariables().get(dirtyVariable).toString());
+		return workUnitVariableMap;
+    }
 
-				i++;
+    static List<Object[]> assignedVariableRows(long conversationId, Map<Long, Map<String, TypedValue>> workUnitVariableMap)
+    {
+		List<Object[]> variableRows = new ArrayList<Object[]>();
+
+		for (Map.Entry<Long, Map<String, TypedValue>> workUnitVariables : workUnitVariableMap.entrySet())
+		{
+			for (Map.Entry<String, TypedValue> workUnitVariable : workUnitVariables.getValue().entrySet())
+			{
+				variableRows.add(new Object[] {conversationId, workUnitVariables.getKey(), workUnitVariable.getKey(), workUnitVariable.getValue().getType(), workUnitVariable.getValue().getBytes()});
 			}
 		}
-		sql.setLength(sql.length()-2);
-		sql.append(") AS vals(x,y,w,z) ON t.conversation_id = vals.x AND t.workunit_id = vals.y AND t.name=vals.w ");
-		sql.append("WHEN MATCHED THEN UPDATE SET t.value=vals.z ");
-		sql.append("WHEN NOT MATCHED THEN INSERT VALUES vals.x, vals.y, vals.w, vals.z");
 
-		if (i>0)
+		return variableRows;
+    }
+
+    static List<Object[]> prunedScopeRows(long conversationId, Set<Long> prunedScopes)
+    {
+		List<Object[]> prunedScopeRows = new ArrayList<Object[]>();
+
+		for (Long prunedScope : prunedScopes)
+		{
+			prunedScopeRows.add(new Object[] {conversationId, prunedScope});
+		}
+
+		return prunedScopeRows;
+    }
+
+    void pruneAssignedVariables(List<Object[]> prunedScopeRows)
+    {
+		if (!prunedScopeRows.isEmpty())
+		{
+			namedParameterJdbcTemplate.getJdbcOperations().batchUpdate("delete from " + assignedVariableTable + " where conversation_id = ? and workunit_id = ?", prunedScopeRows);
+		}
+    }
+
+    void saveAssignedVariables(List<Object[]> variableRows)
+    {
+		int batchSize = Math.max(1, globalWorkflowSettings.getSaveBatchSize());
+
+		for (int from=0; from<variableRows.size(); from+=batchSize)
 		{
-			namedParameterJdbcTemplate.update(sql.toString(), new MapSqlParameterSource(parameters));
+			namedParameterJdbcTemplate.getJdbcOperations().batchUpdate(saveAssignedVariableSql, variableRows.subList(from, Math.min(from + batchSize, variableRows.size())));
+		}
+    }
+
+    void saveTransactions(List<Object[]> transactionRows)
+    {
+		if (!transactionRows.isEmpty())
+		{
+			namedParameterJdbcTemplate.getJdbcOperations().batchUpdate("insert into " + transactionTable + " (conversation_id, ordinal, suspension_point) values (?, ?, ?)", transactionRows);
 		}
     }
+
+    int[] endTransactions(List<Object[]> endTransactionRows)
+    {
+		if (endTransactionRows.isEmpty())
+		{
+			return new int[0];
+		}
+
+		return namedParameterJdbcTemplate.getJdbcOperations().batchUpdate(endTransactionSql(), endTransactionRows);
+    }
+
+    private String endTransactionSql()
+    {
+		if (globalWorkflowSettings.isClusteringEnabled())
+		{
+			return "update " + conversationTable + " set locked_transaction_ordinal = NULL, lease_expiry = NULL, last_transaction_ordinal = ?, suspension_point = ? where id = ? and fencing_token = ?";
+		}
+
+		return "update " + conversationTable + " set last_transaction_ordinal = ?, suspension_point = ? where id = ? and last_transaction_ordinal = ?";
+    }
+
+    private Object[] endTransactionRow(Transaction transaction)
+    {
+		return new Object[] {transaction.getTransactionOrdinal(), transaction.getWorkflow().getExecutionSuspensionPoint(), transaction.getConversationId(), (globalWorkflowSettings.isClusteringEnabled() ? transaction.getFencingToken() : transaction.getTransactionOrdinal() - 1)};
+    }
+
+    void saveConversationStates(List<Object[]> transactionRows)
+    {
+		List<Object[]> stateRows = new ArrayList<Object[]>();
+
+		for (Object[] transactionRow : transactionRows)
+		{
+			stateRows.add(new Object[] {transactionRow[1], transactionRow[2], transactionRow[0], transactionRow[1]});
+		}
+
+		if (!stateRows.isEmpty())
+		{
+			namedParameterJdbcTemplate.getJdbcOperations().batchUpdate("update " + conversationTable + " set last_transaction_ordinal = ?, suspension_point = ? where id = ? and last_transaction_ordinal < ?", stateRows);
+		}
+    }
 
     public void endTransaction(Transaction transaction)
     {
-		String sqlString = "update " + conversationTable + " set locked_transaction_ordinal = NULL where id = :id and locked_transaction_ordinal = :locked_transaction_ordinal";
-		Map<String, Object> parameters = new HashMap<String, Object>();
-
-		parameters.put("id", transaction.getConversationId());
-		parameters.put("locked_transaction_ordinal", transaction.getTransactionOrdinal());
-
-		int effectedRows = namedParameterJdbcTemplate.update(sqlString, new MapSqlParameterSource(parameters));
+		if (globalWorkflowSettings.isExecutionStateHotTierEnabled())
+		{
+			conversationStateStore.endTransaction(transaction);
+
+			return;
+		}
+
+		int effectedRows = namedParameterJdbcTemplate.getJdbcOperations().update(endTransactionSql(), endTransactionRow(transaction));
 
 		if (effectedRows == 0)
 		{
@@ -208,102 +460,254 @@ public class ConversationPersistenceUtilities
     @Transactional
     public Transaction allocateNewTransaction(Conversation conversation, TransactionData transactionData, boolean workflowStatePersisted)
     {
-    	Transaction transaction = null;
-
-		String sql = "select conversation_id, ordinal, suspension_point from " + transactionTable + " where conversation_id = :conversation_id order by ordinal desc limit 1";
-
-		List<Triple<Long, Integer, String>> records = namedParameterJdbcTemplate.query(sql, new MapSqlParameterSource(ImmutableMap.<String, Long>builder().put("conversation_id", conversation.getId()).build()), new RowMapper<Triple<Long, Integer, String>>(){
-	        public Triple<Long, Integer, String> mapRow(ResultSet resultSet, int i) throws SQLException {
-	        	Triple<Long, Integer, String> triple = new ImmutableTriple<Long, Integer, String>(resultSet.getLong("conversation_id"), resultSet.getInt("ordinal"), resultSet.getString("suspension_point"));
-	            return triple;
-	        }
-	    });
+		if (!conversationLockManager.acquire(conversation.getId()))
+		{
+			throw new ConversationException("Conversation is still busy with another transaction. Try again later.");
+		}
 
-		int transactionOrdinal;
-		String executionSuspensionPoint = null;
+		Transaction transaction = null;
+
+		try
+		{
+			if (globalWorkflowSettings.isExecutionStateHotTierEnabled())
+			{
+				transaction = conversationStateStore.allocateNewTransaction(conversation, transactionData, workflowStatePersisted);
+			}
+			else
+			{
+				transaction = allocateClaimedTransaction(conversation, transactionData, workflowStatePersisted);
+			}
+		}
+		finally
+		{
+			if (transaction == null)
+			{
+				conversationLockManager.release(conversation.getId());
+			}
+		}
+
+		return transaction;
+    }
+
+    private Transaction allocateClaimedTransaction(Conversation conversation, TransactionData transactionData, boolean workflowStatePersisted)
+    {
+		Pair<Integer, Workflow> liveWorkflow = (globalWorkflowSettings.isClusteringEnabled() ? null : workflowAffinityCache.get(conversation.getId()));
+
+		if (liveWorkflow != null)
+		{
+			return createTransaction(conversation, transactionData, liveWorkflow.getLeft() + 1, liveWorkflow.getRight().getExecutionSuspensionPoint(), null, workflowStatePersisted);
+		}
+
+		TransactionClaim transactionClaim = claimTransaction(conversation.getId());
 
-		if (!records.isEmpty())
+		if (!transactionClaim.claimed)
 		{
-			transactionOrdinal = records.get(0).getMiddle() + 1;
-			executionSuspensionPoint = records.get(0).getRight();
-
-			if (executionSuspensionPoint == null)
+			if (transactionClaim.lastTransactionOrdinal > 0 && transactionClaim.suspensionPoint == null)
 			{
 				return null;
 			}
+
+			throw new ConversationException("Conversation is still busy with another tsransaction. Try again later.");
 		}
-		else
-		{
-			transactionOrdinal = 1;
+
+		Transaction transaction = createTransaction(conversation, transactionData, transactionClaim.lastTransactionOrdinal + 1, transactionClaim.suspensionPoint, null, workflowStatePersisted);
+
+		transaction.setFencingToken(transactionClaim.fencingToken);
+
+		return transaction;
+    }
+
+    private TransactionClaim claimTransaction(final long conversationId)
+    {
+		if (!globalWorkflowSettings.isClusteringEnabled())
+		{
+			TransactionClaim transactionClaim = selectTransactionClaim(conversationId);
+
+			transactionClaim.claimed = (transactionClaim.lastTransactionOrdinal == 0 || transactionClaim.suspensionPoint != null);
+
+			return transactionClaim;
 		}
-
+
+		final Timestamp claimTime = new Timestamp(System.currentTimeMillis());
+		final Timestamp leaseExpiry = new Timestamp(claimTime.getTime() + globalWorkflowSettings.getConversationLeaseDuration());
+
+		if ("hsqldb".equals(globalWorkflowSettings.getJdbcDialect()))
+		{
+			return namedParameterJdbcTemplate.getJdbcOperations().execute(new ConnectionCallback<TransactionClaim>() {
+					public TransactionClaim doInConnection(Connection connection) throws SQLException, DataAccessException {
+						try (CallableStatement statement = connection.prepareCall("{call " + claimTransactionProcedure + "(?, ?, ?, ?)}"))
+						{
+							statement.setLong(1, conversationId);
+							statement.setTimestamp(2, claimTime);
+							statement.setTimestamp(3, leaseExpiry);
+							statement.registerOutParameter(4, Types.INTEGER);
+
+							boolean hasResultSet = statement.execute();
+
+							TransactionClaim transactionClaim = new TransactionClaim();
+
+							if (hasResultSet || statement.getMoreResults())
+							{
+								try (ResultSet resultSet = statement.getResultSet())
+								{
+									readTransactionClaim(resultSet, transactionClaim);
+								}
+							}
+
+							transactionClaim.claimed = statement.getInt(4) > 0;
+
+							return transactionClaim;
+						}
+					}
+				});
+		}
+
+		String sqlString = "update " + conversationTable + " set locked_transaction_ordinal = last_transaction_ordinal + 1, lease_expiry = ?, fencing_token = fencing_token + 1 where id = ? and (locked_transaction_ordinal is NULL or lease_expiry < ?) and (last_transaction_ordinal = 0 or suspension_point is not NULL)";
+
+		boolean claimed = namedParameterJdbcTemplate.getJdbcOperations().update(sqlString, leaseExpiry, conversationId, claimTime) > 0;
+
+		TransactionClaim transactionClaim = selectTransactionClaim(conversationId);
+
+		transactionClaim.claimed = claimed;
+
+		return transactionClaim;
+    }
+
+    private TransactionClaim selectTransactionClaim(long conversationId)
+    {
+		String sql = "select last_transaction_ordinal, suspension_point, fencing_token from " + conversationTable + " where id = ?";
+
+		return namedParameterJdbcTemplate.getJdbcOperations().query(sql, new ResultSetExtractor<TransactionClaim>() {
+				public TransactionClaim extractData(ResultSet resultSet) throws SQLException, DataAccessException {
+					TransactionClaim transactionClaim = new TransactionClaim();
+
+					readTransactionClaim(resultSet, transactionClaim);
+
+					return transactionClaim;
+				}
+			}, conversationId);
+    }
+
+    private void readTransactionClaim(ResultSet resultSet, TransactionClaim transactionClaim) throws SQLException
+    {
+		while (resultSet.next())
+		{
+			transactionClaim.lastTransactionOrdinal = resultSet.getInt(1);
+			transactionClaim.suspensionPoint = resultSet.getString(2);
+			transactionClaim.fencingToken = resultSet.getLong(3);
+		}
+    }
+
+    Transaction createTransaction(Conversation conversation, TransactionData transactionData, int transactionOrdinal, String executionSuspensionPoint, Map<Long, Map<String, Object>> workUnitVariableMap, boolean workflowStatePersisted)
+    {
 		logger.debug("Transaction ordinal: " + transactionOrdinal);
 		logger.debug("Previous suspension point: " + executionSuspensionPoint);
-
-		String sqlString = "update " + conversationTable + " set locked_transaction_ordinal = :locked_transaction_ordinal where id = :id and locked_transaction_ordinal is NULL";
-		Map<String, Object> parameters = new HashMap<String, Object>();
-
-		parameters.put("locked_transaction_ordinal", transactionOrdinal);
-		parameters.put("id", conversation.getId());
-
-		int effectedRows = namedParameterJdbcTemplate.update(sqlString, new MapSqlParameterSource(parameters));
-
-		if (effectedRows == 0)
-		{
-			throw new ConversationException("Conversation is still busy with another tsransaction. Try again later.");
-		}
-		else
+
+		Transaction transaction = serviceLocator.getInstance(DefaultTransaction.class);
+
+		transaction.setConversationId(conversation.getId());
+		transaction.setTransactionOrdinal(transactionOrdinal);
+		transaction.setTransactionData(transactionData);
+
+		WorkflowContext workflowContext = new WorkflowContext(transaction);
+
+		if (workflowStatePersisted)
 		{
-			transaction = serviceLocator.getInstance(DefaultTransaction.class);
-
-			transaction.setConversationId(conversation.getId());
-			transaction.setTransactionOrdinal(transactionOrdinal);
-			transaction.setTransactionData(transactionData);
-
-			WorkflowContext workflowContext = new WorkflowContext(transaction);
-
-			if (workflowStatePersisted)
-			{
-				Workflow workflow = getStatefulWorkflowByConversation(conversation, workflowContext);
-
-				workflow.setExecutionSuspensionPoint(executionSuspensionPoint);
-
-				transaction.setWorkflow(workflow);
-			}
+			Workflow workflow = workflowAffinityCache.take(conversation.getId(), transactionOrdinal - 1);
+
+			if (workflow != null)
+			{
+				logger.debug("Serving transaction from live workflow of conversation id: " + conversation.getId());
+
+				workflow.setWorkflowContext(workflowContext);
+			}
+			else
+			{
+				workflow = (workUnitVariableMap != null ? getStatefulWorkflowByConversation(conversation, workflowContext, workUnitVariableMap) : getStatefulWorkflowByConversation(conversation, workflowContext, executionSuspensionPoint));
+			}
+
+			workflow.setExecutionSuspensionPoint(executionSuspensionPoint);
+
+			pruneVariableScopes(workflow);
+
+			transaction.setWorkflow(workflow);
 		}
 
-    	return transaction;
+		return transaction;
     }
 
-    private Map<Long, Map<String, Object>> retrieveWorkflowExecutionState(final Conversation conversation)
+    ConversationState retrieveConversationState(long conversationId)
     {
-    	logger.debug("Retrieving from DB the variables for conversationId: " + conversation.getId());
-
-    	String sql = "select workunit_id, name, value from " + assignedVariableTable + " where conversation_id = :conversation_id";
-
-    	Map<Long, Map<String, Object>> workUnitVariableMap = namedParameterJdbcTemplate.query(sql, new MapSqlParameterSource(ImmutableMap.<String, Long>builder().put("conversation_id", conversation.getId()).build()), 
-				new ResultSetExtractor<Map<Long, Map<String, Object>>>()
+		TransactionClaim transactionClaim = selectTransactionClaim(conversationId);
+
+		return new ConversationState(conversationId, transactionClaim.lastTransactionOrdinal, transactionClaim.suspensionPoint, retrieveAssignedVariables(conversationId, null));
+    }
+
+    Map<Long, Map<String, Object>> retrieveWorkflowExecutionState(long conversationId)
+    {
+		return decodeVariables(retrieveAssignedVariables(conversationId, null));
+    }
+
+    Map<Long, Map<String, Object>> decodeVariables(Map<Long, Map<String, TypedValue>> workUnitVariableMap)
+    {
+		Map<Long, Map<String, Object>> decodedVariableMap = new HashMap<Long, Map<String, Object>>();
+
+		for (Map.Entry<Long, Map<String, TypedValue>> workUnitVariables : workUnitVariableMap.entrySet())
+		{
+			Map<String, Object> decodedVariables = new HashMap<String, Object>();
+
+			for (Map.Entry<String, TypedValue> workUnitVariable : workUnitVariables.getValue().entrySet())
+			{
+				decodedVariables.put(workUnitVariable.getKey(), variableValueCodec.decode(workUnitVariable.getValue()));
+			}
+
+			decodedVariableMap.put(workUnitVariables.getKey(), decodedVariables);
+		}
+
+		return decodedVariableMap;
+    }
+
+    Map<Long, Map<String, TypedValue>> retrieveAssignedVariables(long conversationId, Set<Long> workUnitIds)
+    {
+    	logger.debug("Retrieving from DB the variables for conversationId: " + conversationId);
+
+    	if (workUnitIds != null && workUnitIds.isEmpty())
+    	{
+    		return new HashMap<Long, Map<String, TypedValue>>();
+    	}
+
+    	String sql = "select workunit_id, name, value_type, value from " + assignedVariableTable + " where conversation_id = :conversation_id" + (workUnitIds != null ? " and workunit_id in (:workunit_ids)" : "");
+
+    	MapSqlParameterSource parameters = new MapSqlParameterSource("conversation_id", conversationId);
+
+    	if (workUnitIds != null)
+    	{
+    		parameters.addValue("workunit_ids", workUnitIds);
+    	}
+
+    	Map<Long, Map<String, TypedValue>> workUnitVariableMap = namedParameterJdbcTemplate.query(sql, parameters, 
+				new ResultSetExtractor<Map<Long, Map<String, TypedValue>>>()
 				{
-					public Map<Long, Map<String, Object>> extractData(ResultSet resultSet) throws SQLException, DataAccessException
+					public Map<Long, Map<String, TypedValue>> extractData(ResultSet resultSet) throws SQLException, DataAccessException
 					{
 						EnhancedResultSet enhancedResultSet = new EnhancedResultSet(resultSet);
 
-						Map<Long, Map<String, Object>> map = new HashMap<Long, Map<String, Object>>();
+						Map<Long, Map<String, TypedValue>> map = new HashMap<Long, Map<String, TypedValue>>();
 
 						while (resultSet.next())
 						{
-							long workunitId = enhancedResultSet.get(assignedVariableTable, "workunit_id");
+							long workunitId = enhancedResultSet.getLong(assignedVariableTable, "workunit_id");
 
-							Map<String, Object> workunitVariables = map.get(workunitId);
+							Map<String, TypedValue> workunitVariables = map.get(workunitId);
 
 							if(workunitVariables == null)
 							{
-								workunitVariables = new HashMap<String, Object>();
+								workunitVariables = new HashMap<String, TypedValue>();
 
 								map.put(workunitId, workunitVariables);
 							}
 
-							workunitVariables.put(enhancedResultSet.<String>get(assignedVariableTable, "name"), enhancedResultSet.<String>get(assignedVariableTable, "value"));
+							workunitVariables.put(enhancedResultSet.getString(assignedVariableTable, "name"), new TypedValue(enhancedResultSet.getShort(assignedVariableTable, "value_type"), enhancedResultSet.<byte[]>get(assignedVariableTable, "value")));
 						}
 						return map;
 					}
@@ -334,4 +738,15 @@ public class ConversationPersistenceUtilities
 
 		return conversation;
 	}
+
+	private static class TransactionClaim
+	{
+		private boolean claimed;
+
+		private int lastTransactionOrdinal;
+
+		private String suspensionPoint;
+
+		private long fencingToken;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.conversation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import greenflow.persistence.TypedValue;
+
+class ConversationState
+{
+	private final long conversationId;
+
+	private int transactionOrdinal;
+
+	private String suspensionPoint;
+
+	private int lockedTransactionOrdinal;
+
+	private Map<Long, Map<String, TypedValue>> variables;
+
+	private List<Object[]> pendingTransactionRows = new ArrayList<Object[]>();
+
+	private Set<Long> pendingPrunedScopes = new HashSet<Long>();
+
+	private Map<Long, Map<String, TypedValue>> pendingVariables = new HashMap<Long, Map<String, TypedValue>>();
+
+	private int flushesInProgress;
+
+	private boolean evicted;
+
+	private volatile long lastAccess = System.nanoTime();
+
+	ConversationState(long conversationId, int transactionOrdinal, String suspensionPoint, Map<Long, Map<String, TypedValue>> variables)
+	{
+		this.conversationId = conversationId;
+		this.transactionOrdinal = transactionOrdinal;
+		this.suspensionPoint = suspensionPoint;
+		this.variables = variables;
+	}
+
+	void recordTransaction(int transactionOrdinal, String suspensionPoint)
+	{
+		this.transactionOrdinal = transactionOrdinal;
+		this.suspensionPoint = suspensionPoint;
+
+		pendingTransactionRows.add(new Object[] {conversationId, transactionOrdinal, suspensionPoint});
+	}
+
+	void recordVariables(Set<Long> prunedScopes, Map<Long, Map<String, TypedValue>> workUnitVariableMap)
+	{
+		Map<Long, Map<String, TypedValue>> updatedVariables = new HashMap<Long, Map<String, TypedValue>>(variables);
+
+		for (Long prunedScope : prunedScopes)
+		{
+			updatedVariables.remove(prunedScope);
+			pendingVariables.remove(prunedScope);
+			pendingPrunedScopes.add(prunedScope);
+		}
+
+		for (Map.Entry<Long, Map<String, TypedValue>> workUnitVariables : workUnitVariableMap.entrySet())
+		{
+			Map<String, TypedValue> updatedWorkUnitVariables = new HashMap<String, TypedValue>();
+
+			if (variables.containsKey(workUnitVariables.getKey()))
+			{
+				updatedWorkUnitVariables.putAll(variables.get(workUnitVariables.getKey()));
+			}
+
+			updatedWorkUnitVariables.putAll(workUnitVariables.getValue());
+
+			updatedVariables.put(workUnitVariables.getKey(), updatedWorkUnitVariables);
+
+			Map<String, TypedValue> pendingWorkUnitVariables = pendingVariables.get(workUnitVariables.getKey());
+
+			if (pendingWorkUnitVariables == null)
+			{
+				pendingWorkUnitVariables = new HashMap<String, TypedValue>();
+
+				pendingVariables.put(workUnitVariables.getKey(), pendingWorkUnitVariables);
+			}
+
+			pendingWorkUnitVariables.putAll(workUnitVariables.getValue());
+		}
+
+		variables = updatedVariables;
+	}
+
+	boolean hasPendingState()
+	{
+		return !pendingTransactionRows.isEmpty() || !pendingPrunedScopes.isEmpty() || !pendingVariables.isEmpty();
+	}
+
+	List<Object[]> drainTransactionRows()
+	{
+		List<Object[]> transactionRows = pendingTransactionRows;
+
+		pendingTransactionRows = new ArrayList<Object[]>();
+
+		return transactionRows;
+	}
+
+	List<Object[]> drainPrunedScopeRows()
+	{
+		List<Object[]> prunedScopeRows = ConversationPersistenceUtilities.prunedScopeRows(conversationId, pendingPrunedScopes);
+
+		pendingPrunedScopes.clear();
+
+		return prunedScopeRows;
+	}
+
+	List<Object[]> drainVariableRows()
+	{
+		List<Object[]> variableRows = ConversationPersistenceUtilities.assignedVariableRows(conversationId, pendingVariables);
+
+		pendingVariables.clear();
+
+		return variableRows;
+	}
+
+	void requeue(List<Object[]> transactionRows, List<Object[]> prunedScopeRows, List<Object[]> variableRows)
+	{
+		transactionRows.addAll(pendingTransactionRows);
+
+		pendingTransactionRows = transactionRows;
+
+		for (Object[] prunedScopeRow : prunedScopeRows)
+		{
+			pendingPrunedScopes.add((Long) prunedScopeRow[1]);
+		}
+
+		for (Object[] variableRow : variableRows)
+		{
+			Map<String, TypedValue> pendingWorkUnitVariables = pendingVariables.get(variableRow[1]);
+
+			if (pendingWorkUnitVariables == null)
+			{
+				pendingWorkUnitVariables = new HashMap<String, TypedValue>();
+
+				pendingVariables.put((Long) variableRow[1], pendingWorkUnitVariables);
+			}
+
+			if (!pendingWorkUnitVariables.containsKey(variableRow[2]))
+			{
+				pendingWorkUnitVariables.put((String) variableRow[2], new TypedValue((Short) variableRow[3], (byte[]) variableRow[4]));
+			}
+		}
+	}
+
+	void lock(int transactionOrdinal)
+	{
+		lockedTransactionOrdinal = transactionOrdinal;
+		lastAccess = System.nanoTime();
+	}
+
+	void unlock()
+	{
+		lockedTransactionOrdinal = 0;
+		lastAccess = System.nanoTime();
+	}
+
+	boolean isLocked()
+	{
+		return lockedTransactionOrdinal != 0;
+	}
+
+	boolean isLockedBy(int transactionOrdinal)
+	{
+		return lockedTransactionOrdinal == transactionOrdinal;
+	}
+
+	void startFlush()
+	{
+		flushesInProgress++;
+	}
+
+	void endFlush()
+	{
+		flushesInProgress--;
+	}
+
+	boolean isFlushing()
+	{
+		return flushesInProgress > 0;
+	}
+
+	long getConversationId()
+	{
+		return conversationId;
+	}
+
+	int getTransactionOrdinal()
+	{
+		return transactionOrdinal;
+	}
+
+	String getSuspensionPoint()
+	{
+		return suspensionPoint;
+	}
+
+	Map<Long, Map<String, TypedValue>> getVariables()
+	{
+		return variables;
+	}
+
+	boolean isEvicted()
+	{
+		return evicted;
+	}
+
+	void setEvicted(boolean evicted)
+	{
+		this.evicted = evicted;
+	}
+
+	long getLastAccess()
+	{
+		return lastAccess;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,465 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.conversation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import greenflow.exception.ConversationException;
+import greenflow.persistence.TypedValue;
+import greenflow.utilities.GlobalWorkflowSettingsUtilities;
+
+@Service
+public class ConversationStateStore
+{
+	private static final Logger logger = LoggerFactory.getLogger(ConversationStateStore.class);
+
+	@Autowired
+	private ConversationPersistenceUtilities conversationPersistenceUtilities;
+
+	@Autowired
+	private TransactionGroupCommitter transactionGroupCommitter;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
+
+	private TransactionTemplate flushTransactionTemplate;
+
+	private ScheduledExecutorService flusher;
+
+	private ConcurrentMap<Long, ConversationState> states = new ConcurrentHashMap<Long, ConversationState>();
+
+	private AtomicBoolean evictionScheduled = new AtomicBoolean();
+
+	@PostConstruct
+	protected void init()
+	{
+		if (globalWorkflowSettings.isExecutionStateHotTierEnabled() && globalWorkflowSettings.isClusteringEnabled())
+		{
+			throw new ConversationException("The execution state hot tier keeps conversations in this node only and cannot be enabled together with clustering.");
+		}
+
+		flushTransactionTemplate = new TransactionTemplate(transactionManager);
+
+		flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("execution-state-flusher-%d").setDaemon(true).build());
+
+		if (globalWorkflowSettings.isExecutionStateHotTierEnabled() && globalWorkflowSettings.getExecutionStateDurability() == ExecutionStateDurability.INTERVAL)
+		{
+			long flushInterval = globalWorkflowSettings.getExecutionStateFlushInterval();
+
+			flusher.scheduleWithFixedDelay(new Runnable() {
+					public void run() {
+						flush();
+					}
+				}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void close()
+	{
+		flusher.shutdown();
+
+		try
+		{
+			flusher.awaitTermination(globalWorkflowSettings.getExecutionStateFlushInterval(), TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		flush();
+	}
+
+	public Transaction allocateNewTransaction(Conversation conversation, TransactionData transactionData, boolean workflowStatePersisted)
+	{
+		ConversationState state;
+
+		int transactionOrdinal;
+		String executionSuspensionPoint;
+		Map<Long, Map<String, TypedValue>> workUnitVariableMap;
+
+		do
+		{
+			state = retrieveState(conversation.getId());
+
+			synchronized (state)
+			{
+				if (state.isEvicted())
+				{
+					continue;
+				}
+
+				if (state.getTransactionOrdinal() > 0 && state.getSuspensionPoint() == null)
+				{
+					return null;
+				}
+
+				if (state.isLocked())
+				{
+					throw new ConversationException("Conversation is still busy with another transaction. Try again later.");
+				}
+
+				transactionOrdinal = state.getTransactionOrdinal() + 1;
+				executionSuspensionPoint = state.getSuspensionPoint();
+				workUnitVariableMap = state.getVariables();
+
+				state.lock(transactionOrdinal);
+
+				break;
+			}
+		}
+		while (true);
+
+		try
+		{
+			return conversationPersistenceUtilities.createTransaction(conversation, transactionData, transactionOrdinal, executionSuspensionPoint, (workflowStatePersisted ? conversationPersistenceUtilities.decodeVariables(workUnitVariableMap) : null), workflowStatePersisted);
+		}
+		catch (RuntimeException e)
+		{
+			synchronized (state)
+			{
+				state.unlock();
+			}
+
+			throw e;
+		}
+	}
+
+	public void saveTransactionState(Transaction transaction)
+	{
+		ConversationState state = retrieveLockedState(transaction);
+
+		synchronized (state)
+		{
+			state.recordTransaction(transaction.getTransactionOrdinal(), transaction.getWorkflow().getExecutionSuspensionPoint());
+		}
+	}
+
+	public void saveWorkflowState(Transaction transaction, Set<Long> prunedScopes, Map<Long, Map<String, TypedValue>> workUnitVariableMap)
+	{
+		ConversationState state = retrieveLockedState(transaction);
+
+		synchronized (state)
+		{
+			state.recordVariables(prunedScopes, workUnitVariableMap);
+		}
+	}
+
+	public void endTransaction(Transaction transaction)
+	{
+		ConversationState state = retrieveLockedState(transaction);
+
+		List<Object[]> transactionRows;
+		List<Object[]> prunedScopeRows;
+		List<Object[]> variableRows;
+
+		synchronized (state)
+		{
+			if (globalWorkflowSettings.getExecutionStateDurability() != ExecutionStateDurability.PER_TRANSACTION)
+			{
+				state.unlock();
+
+				return;
+			}
+
+			transactionRows = state.drainTransactionRows();
+			prunedScopeRows = state.drainPrunedScopeRows();
+			variableRows = state.drainVariableRows();
+		}
+
+		try
+		{
+			if (globalWorkflowSettings.isGroupCommitEnabled())
+			{
+				transactionGroupCommitter.commit(transactionRows, prunedScopeRows, variableRows, null);
+			}
+			else
+			{
+				saveExecutionState(transactionRows, prunedScopeRows, variableRows);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			synchronized (state)
+			{
+				state.setEvicted(true);
+				state.unlock();
+
+				states.remove(state.getConversationId(), state);
+			}
+
+			throw e;
+		}
+
+		synchronized (state)
+		{
+			state.unlock();
+		}
+	}
+
+	public void abandonTransaction(Transaction transaction)
+	{
+		ConversationState state = states.get(transaction.getConversationId());
+
+		if (state != null)
+		{
+			synchronized (state)
+			{
+				if (state.isLockedBy(transaction.getTransactionOrdinal()))
+				{
+					state.unlock();
+				}
+			}
+		}
+	}
+
+	public void flush()
+	{
+		List<ConversationState> flushedStates = new ArrayList<ConversationState>();
+		List<List<Object[]>> flushedTransactionRows = new ArrayList<List<Object[]>>();
+		List<List<Object[]>> flushedPrunedScopeRows = new ArrayList<List<Object[]>>();
+		List<List<Object[]>> flushedVariableRows = new ArrayList<List<Object[]>>();
+
+		List<Object[]> transactionRows = new ArrayList<Object[]>();
+		List<Object[]> prunedScopeRows = new ArrayList<Object[]>();
+		List<Object[]> variableRows = new ArrayList<Object[]>();
+
+		for (ConversationState state : states.values())
+		{
+			synchronized (state)
+			{
+				if (state.hasPendingState())
+				{
+					state.startFlush();
+
+					flushedStates.add(state);
+					flushedTransactionRows.add(state.drainTransactionRows());
+					flushedPrunedScopeRows.add(state.drainPrunedScopeRows());
+					flushedVariableRows.add(state.drainVariableRows());
+
+					transactionRows.addAll(flushedTransactionRows.get(flushedTransactionRows.size()-1));
+					prunedScopeRows.addAll(flushedPrunedScopeRows.get(flushedPrunedScopeRows.size()-1));
+					variableRows.addAll(flushedVariableRows.get(flushedVariableRows.size()-1));
+				}
+			}
+		}
+
+		if (flushedStates.isEmpty())
+		{
+			return;
+		}
+
+		boolean flushed = false;
+
+		try
+		{
+			saveExecutionState(transactionRows, prunedScopeRows, variableRows);
+
+			flushed = true;
+
+			logger.debug("Flushed execution state of " + flushedStates.size() + " conversation(s)");
+		}
+		catch (RuntimeException e)
+		{
+			logger.error("Unable to flush execution state of " + flushedStates.size() + " conversation(s), retrying on next flush", e);
+		}
+		finally
+		{
+			for (int i=0; i<flushedStates.size(); i++)
+			{
+				ConversationState state = flushedStates.get(i);
+
+				synchronized (state)
+				{
+					if (!flushed)
+					{
+						state.requeue(flushedTransactionRows.get(i), flushedPrunedScopeRows.get(i), flushedVariableRows.get(i));
+					}
+
+					state.endFlush();
+				}
+			}
+		}
+	}
+
+	private ConversationState retrieveState(long conversationId)
+	{
+		ConversationState state = states.get(conversationId);
+
+		if (state != null)
+		{
+			return state;
+		}
+
+		ConversationState loadedState = conversationPersistenceUtilities.retrieveConversationState(conversationId);
+
+		state = states.putIfAbsent(conversationId, loadedState);
+
+		if (state != null)
+		{
+			return state;
+		}
+
+		if (states.size() > globalWorkflowSettings.getExecutionStateHotTierSize() && evictionScheduled.compareAndSet(false, true))
+		{
+			scheduleEviction();
+		}
+
+		return loadedState;
+	}
+
+	private ConversationState retrieveLockedState(Transaction transaction)
+	{
+		ConversationState state = states.get(transaction.getConversationId());
+
+		if (state != null)
+		{
+			synchronized (state)
+			{
+				if (state.isLockedBy(transaction.getTransactionOrdinal()))
+				{
+					return state;
+				}
+			}
+		}
+
+		throw new ConversationException("Attempting to close an inactive transaction! Conversation id: " + transaction.getConversationId() + ", Transaction ordinal: " + transaction.getTransactionOrdinal() + ".");
+	}
+
+	private void scheduleEviction()
+	{
+		try
+		{
+			flusher.execute(new Runnable() {
+					public void run() {
+						try
+						{
+							evictOverflow();
+						}
+						finally
+						{
+							evictionScheduled.set(false);
+						}
+					}
+				});
+		}
+		catch (RejectedExecutionException e)
+		{
+			evictionScheduled.set(false);
+		}
+	}
+
+	private void evictOverflow()
+	{
+		List<ConversationState> candidates = new ArrayList<ConversationState>(states.values());
+
+		Collections.sort(candidates, new Comparator<ConversationState>() {
+				public int compare(ConversationState state1, ConversationState state2) {
+					return Long.compare(state1.getLastAccess(), state2.getLastAccess());
+				}
+			});
+
+		int evictions = candidates.size() - globalWorkflowSettings.getExecutionStateHotTierSize() * 9 / 10;
+
+		for (int i=0; i<candidates.size() && evictions > 0; i++)
+		{
+			if (evict(candidates.get(i)))
+			{
+				evictions--;
+			}
+		}
+	}
+
+	private boolean evict(ConversationState state)
+	{
+		synchronized (state)
+		{
+			if (state.isEvicted() || state.isLocked() || state.isFlushing())
+			{
+				return false;
+			}
+
+			if (state.hasPendingState())
+			{
+				List<Object[]> transactionRows = state.drainTransactionRows();
+				List<Object[]> prunedScopeRows = state.drainPrunedScopeRows();
+				List<Object[]> variableRows = state.drainVariableRows();
+
+				try
+				{
+					saveExecutionState(transactionRows, prunedScopeRows, variableRows);
+				}
+				catch (RuntimeException e)
+				{
+					state.requeue(transactionRows, prunedScopeRows, variableRows);
+
+					logger.warn("Unable to flush execution state of evicted conversation id: " + state.getConversationId(), e);
+
+					return false;
+				}
+			}
+
+			state.setEvicted(true);
+
+			states.remove(state.getConversationId(), state);
+		}
+
+		return true;
+	}
+
+	private void saveExecutionState(final List<Object[]> transactionRows, final List<Object[]> prunedScopeRows, final List<Object[]> variableRows)
+	{
+		flushTransactionTemplate.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					conversationPersistenceUtilities.saveTransactions(transactionRows);
+					conversationPersistenceUtilities.saveConversationStates(transactionRows);
+					conversationPersistenceUtilities.pruneAssignedVariables(prunedScopeRows);
+					conversationPersistenceUtilities.saveAssignedVariables(variableRows);
+				}
+			});
+	}
+}
\ No newline at end of file
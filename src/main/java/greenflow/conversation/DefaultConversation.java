@@ -16,6 +16,9 @@
 
 package greenflow.conversation;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,9 +35,18 @@ public class DefaultConversation extends Conversation
 	@Autowired
 	private ConversationPersistenceUtilities workflowConversationPersistenceUtilities;
 
+	@Autowired
+	private ConversationMailbox conversationMailbox;
+
 	@Override
 	public Transaction startTransaction(TransactionData transactionData, boolean workflowStatePersisted)
 	{
 		return workflowConversationPersistenceUtilities.allocateNewTransaction(this, transactionData, workflowStatePersisted);
 	}
+
+	@Override
+	public CompletableFuture<List<TransactionResult<?>>> submitTransaction(TransactionData transactionData)
+	{
+		return conversationMailbox.submit(this, transactionData);
+	}
 }
\ No newline at end of file
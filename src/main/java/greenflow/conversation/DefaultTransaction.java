@@ -45,42 +45,46 @@ public class DefaultTransaction extends Transaction
 			throw new ConversationException("Trying to execute a stale transaction! Conversation id: " + getConversationId() + ", Transaction ordinal: " + getTransactionOrdinal() + ".");
 		}
 
-		getWorkflow().execute();
-
-		saveTransactionState();
-
-		if ((getWorkflow().getExecutionSuspensionPoint() != null && getWorkflow().getWorkUnitByBreadcrumbId(getWorkflow().getExecutionSuspensionPoint()).isPersistAfterReturn())
-
-				|| getWorkflow().getExecutionSuspensionPoint() == null)
-		{
-			saveWorkflowState();
+		List<TransactionResult<?>> resultList = new ArrayList<TransactionResult<?>>();
+
+		WorkUnit returningWorkUnit = null;
+
+		try
+		{
+			getWorkflow().execute();
+
+			String executionSuspensionPoint = getWorkflow().getExecutionSuspensionPoint();
+
+			if (executionSuspensionPoint != null)
+			{
+				returningWorkUnit = getWorkflow().getWorkUnitByBreadcrumbId(executionSuspensionPoint);
+
+				for (String returnedVariable : returningWorkUnit.getReturnedVariables())
+				{
+					final Object returnedValue = getWorkflow().lookUpVariableValue(returningWorkUnit, returnedVariable);
+
+					resultList.add(new TransactionResult<Object>()
+					{
+						@Override
+						public Object getData()
+						{
+							return returnedValue;
+						}
+					});
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			workflowConversationPersistenceUtilities.abandonTransaction(this);
+
+			throw e;
 		}
 
-		endTransaction();
+		completeTransaction(returningWorkUnit == null || returningWorkUnit.isPersistAfterReturn());
 
 		setStale(true);
 
-		List<TransactionResult<?>> resultList = new ArrayList<TransactionResult<?>>();
-
-		if (getWorkflow().getExecutionSuspensionPoint() != null)
-		{
-			final WorkUnit returningWorkUnit = getWorkflow().getWorkUnitByBreadcrumbId(getWorkflow().getExecutionSuspensionPoint());
-
-			for (String returnedVariable : returningWorkUnit.getReturnedVariables())
-			{
-				final String finalReturnedVariable = returnedVariable;
-
-				resultList.add(new TransactionResult<Object>()
-				{
-					@Override
-					public Object getData()
-					{
-						return returningWorkUnit.lookUpVariableValue(finalReturnedVariable);
-					}
-				});
-			}
-		}
-
 		logger.debug("Returning to transaction client a list of " + resultList.size() + " transaction result object(s).");
 
 		int i=0;
@@ -93,18 +97,8 @@ public class DefaultTransaction extends Transaction
 		return resultList;
 	}
 
-	private void saveTransactionState()
-	{
-		workflowConversationPersistenceUtilities.saveTransactionState(this);
-	}
-
-	private void saveWorkflowState()
-	{
-		workflowConversationPersistenceUtilities.saveWorkflowState(this);
-	}
-
-	private void endTransaction()
+	private void completeTransaction(boolean workflowStatePersisted)
 	{
-		workflowConversationPersistenceUtilities.endTransaction(this);
+		workflowConversationPersistenceUtilities.completeTransaction(this, workflowStatePersisted);
 	}
 }
\ No newline at end of file
@@ -33,6 +33,8 @@ public abstract class Transaction
 	private Workflow workflow;
 
 	private int transactionOrdinal;
+
+	private long fencingToken;
 
 	private TransactionData transactionData;
 
@@ -77,6 +79,16 @@ public abstract class Transaction
 		this.transactionOrdinal = transactionOrdinal;
 	}
 
+	public long getFencingToken()
+	{
+		return fencingToken;
+	}
+
+	protected void setFencingToken(long fencingToken)
+	{
+		this.fencingToken = fencingToken;
+	}
+
 	public TransactionData getTransactionData()
 	{
 		return transactionData;
@@ -0,0 +1,332 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.conversation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import greenflow.exception.ConversationException;
+import greenflow.utilities.GlobalWorkflowSettingsUtilities;
+
+@Service
+public class TransactionGroupCommitter
+{
+	private static final Logger logger = LoggerFactory.getLogger(TransactionGroupCommitter.class);
+
+	@Autowired
+	private ConversationPersistenceUtilities conversationPersistenceUtilities;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
+
+	private TransactionTemplate groupTransactionTemplate;
+
+	private BlockingQueue<PendingCommit> pendingCommits = new LinkedBlockingQueue<PendingCommit>();
+
+	private ExecutorService committer;
+
+	private volatile boolean running;
+
+	private boolean closed;
+
+	@PostConstruct
+	protected void init()
+	{
+		groupTransactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	@PreDestroy
+	public synchronized void close()
+	{
+		closed = true;
+		running = false;
+
+		if (committer != null)
+		{
+			committer.shutdown();
+
+			try
+			{
+				committer.awaitTermination(30, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public void commit(List<Object[]> transactionRows, List<Object[]> prunedScopeRows, List<Object[]> variableRows, Object[] unlockRow)
+	{
+		PendingCommit pendingCommit = new PendingCommit(transactionRows, prunedScopeRows, variableRows, unlockRow);
+
+		if (!enqueue(pendingCommit))
+		{
+			commitGroup(Collections.singletonList(pendingCommit));
+		}
+
+		try
+		{
+			pendingCommit.outcome.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+
+			throw new ConversationException("Interrupted while waiting for transaction group commit.");
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new ConversationException(e.getCause().getMessage());
+		}
+	}
+
+	private synchronized boolean enqueue(PendingCommit pendingCommit)
+	{
+		if (closed)
+		{
+			return false;
+		}
+
+		if (committer == null)
+		{
+			running = true;
+
+			committer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("transaction-group-commit-%d").setDaemon(true).build());
+
+			committer.execute(new Runnable() {
+					public void run() {
+						commitGroups();
+					}
+				});
+		}
+
+		pendingCommits.add(pendingCommit);
+
+		return true;
+	}
+
+	private void commitGroups()
+	{
+		List<PendingCommit> group = new ArrayList<PendingCommit>();
+
+		while (running || !pendingCommits.isEmpty())
+		{
+			try
+			{
+				PendingCommit pendingCommit = pendingCommits.poll(100, TimeUnit.MILLISECONDS);
+
+				if (pendingCommit == null)
+				{
+					continue;
+				}
+
+				group.add(pendingCommit);
+
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(globalWorkflowSettings.getGroupCommitWindow());
+				int groupSize = Math.max(1, globalWorkflowSettings.getGroupCommitSize());
+
+				while (group.size() < groupSize)
+				{
+					long remaining = deadline - System.nanoTime();
+
+					pendingCommit = (remaining > 0 ? pendingCommits.poll(remaining, TimeUnit.NANOSECONDS) : pendingCommits.poll());
+
+					if (pendingCommit == null)
+					{
+						break;
+					}
+
+					group.add(pendingCommit);
+				}
+
+				commitGroup(group);
+			}
+			catch (InterruptedException e)
+			{
+				running = false;
+			}
+			catch (RuntimeException e)
+			{
+				logger.error("Unexpected failure committing a group of " + group.size() + " transaction(s)", e);
+
+				for (PendingCommit pendingCommit : group)
+				{
+					pendingCommit.outcome.completeExceptionally(e);
+				}
+			}
+			finally
+			{
+				group.clear();
+			}
+		}
+
+		for (PendingCommit pendingCommit; (pendingCommit = pendingCommits.poll()) != null; )
+		{
+			commitGroup(Collections.singletonList(pendingCommit));
+		}
+	}
+
+	private void commitGroup(final List<PendingCommit> group)
+	{
+		final List<RuntimeException> failures = new ArrayList<RuntimeException>(Collections.<RuntimeException>nCopies(group.size(), null));
+
+		try
+		{
+			groupTransactionTemplate.execute(new TransactionCallbackWithoutResult() {
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						writeGroup(group, failures);
+					}
+				});
+		}
+		catch (RuntimeException e)
+		{
+			if (group.size() == 1)
+			{
+				group.get(0).outcome.completeExceptionally(e);
+
+				return;
+			}
+
+			logger.warn("Group commit of " + group.size() + " transaction(s) failed, committing them one by one", e);
+
+			for (PendingCommit pendingCommit : group)
+			{
+				commitGroup(Collections.singletonList(pendingCommit));
+			}
+
+			return;
+		}
+
+		logger.debug("Group committed " + group.size() + " transaction(s)");
+
+		for (int i=0; i<group.size(); i++)
+		{
+			if (failures.get(i) != null)
+			{
+				group.get(i).outcome.completeExceptionally(failures.get(i));
+			}
+			else
+			{
+				group.get(i).outcome.complete(null);
+			}
+		}
+	}
+
+	private void writeGroup(List<PendingCommit> group, List<RuntimeException> failures)
+	{
+		List<Integer> unlocking = new ArrayList<Integer>();
+		List<Object[]> unlockRows = new ArrayList<Object[]>();
+
+		for (int i=0; i<group.size(); i++)
+		{
+			if (group.get(i).unlockRow != null)
+			{
+				unlocking.add(i);
+				unlockRows.add(group.get(i).unlockRow);
+			}
+		}
+
+		int[] unlocked = conversationPersistenceUtilities.endTransactions(unlockRows);
+
+		for (int i=0; i<unlocked.length; i++)
+		{
+			if (unlocked[i] == 0)
+			{
+				Object[] unlockRow = unlockRows.get(i);
+
+				failures.set(unlocking.get(i), new ConversationException("Attempting to close an inactive transaction! Conversation id: " + unlockRow[2] + ", Transaction ordinal: " + unlockRow[0] + "."));
+			}
+		}
+
+		List<Object[]> transactionRows = new ArrayList<Object[]>();
+		List<Object[]> unlockedTransactionRows = new ArrayList<Object[]>();
+		List<Object[]> prunedScopeRows = new ArrayList<Object[]>();
+		List<Object[]> variableRows = new ArrayList<Object[]>();
+
+		for (int i=0; i<group.size(); i++)
+		{
+			if (failures.get(i) == null)
+			{
+				transactionRows.addAll(group.get(i).transactionRows);
+				prunedScopeRows.addAll(group.get(i).prunedScopeRows);
+				variableRows.addAll(group.get(i).variableRows);
+
+				if (group.get(i).unlockRow == null)
+				{
+					unlockedTransactionRows.addAll(group.get(i).transactionRows);
+				}
+			}
+		}
+
+		conversationPersistenceUtilities.saveTransactions(transactionRows);
+		conversationPersistenceUtilities.saveConversationStates(unlockedTransactionRows);
+		conversationPersistenceUtilities.pruneAssignedVariables(prunedScopeRows);
+		conversationPersistenceUtilities.saveAssignedVariables(variableRows);
+	}
+
+	private static class PendingCommit
+	{
+		private final List<Object[]> transactionRows;
+
+		private final List<Object[]> prunedScopeRows;
+
+		private final List<Object[]> variableRows;
+
+		private final Object[] unlockRow;
+
+		private final CompletableFuture<Void> outcome = new CompletableFuture<Void>();
+
+		PendingCommit(List<Object[]> transactionRows, List<Object[]> prunedScopeRows, List<Object[]> variableRows, Object[] unlockRow)
+		{
+			this.transactionRows = transactionRows;
+			this.prunedScopeRows = prunedScopeRows;
+			this.variableRows = variableRows;
+			this.unlockRow = unlockRow;
+		}
+	}
+}
\ No newline at end of file
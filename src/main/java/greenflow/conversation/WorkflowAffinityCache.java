@@ -0,0 +1,105 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.conversation;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import greenflow.utilities.GlobalWorkflowSettingsUtilities;
+import greenflow.workflow.Workflow;
+
+@Service
+public class WorkflowAffinityCache
+{
+	private static final Logger logger = LoggerFactory.getLogger(WorkflowAffinityCache.class);
+
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
+
+	private Cache<Long, Pair<Integer, Workflow>> liveWorkflows;
+
+	@PostConstruct
+	protected void init()
+	{
+		liveWorkflows = CacheBuilder.newBuilder().maximumSize(Math.max(0, globalWorkflowSettings.getWorkflowAffinityCacheSize())).build();
+	}
+
+	public boolean isEnabled()
+	{
+		return globalWorkflowSettings.getWorkflowAffinityCacheSize() > 0;
+	}
+
+	public void put(long conversationId, int transactionOrdinal, Workflow workflow)
+	{
+		if (!isEnabled())
+		{
+			return;
+		}
+
+		workflow.getDirtyVariables().clear();
+
+		liveWorkflows.put(conversationId, new ImmutablePair<Integer, Workflow>(transactionOrdinal, workflow));
+	}
+
+	public Pair<Integer, Workflow> get(long conversationId)
+	{
+		return liveWorkflows.getIfPresent(conversationId);
+	}
+
+	public Workflow take(long conversationId, int lastTransactionOrdinal)
+	{
+		Pair<Integer, Workflow> liveWorkflow = liveWorkflows.asMap().remove(conversationId);
+
+		if (liveWorkflow == null)
+		{
+			return null;
+		}
+
+		if (liveWorkflow.getLeft() != lastTransactionOrdinal)
+		{
+			logger.debug("Discarding stale live workflow of conversation id: " + conversationId + ", cached transaction ordinal: " + liveWorkflow.getLeft() + ", last transaction ordinal: " + lastTransactionOrdinal);
+
+			return null;
+		}
+
+		return liveWorkflow.getRight();
+	}
+
+	public void evict(long conversationId)
+	{
+		liveWorkflows.invalidate(conversationId);
+	}
+
+	public void evictAll()
+	{
+		liveWorkflows.invalidateAll();
+	}
+
+	public long size()
+	{
+		return liveWorkflows.size();
+	}
+}
\ No newline at end of file
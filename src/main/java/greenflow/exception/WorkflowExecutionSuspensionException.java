@@ -20,10 +20,10 @@ public class WorkflowExecutionSuspensionException extends RuntimeException {
 	private static final long serialVersionUID = 7128639453919447928L;
 
 	public WorkflowExecutionSuspensionException(){
-		super();
+		super(null, null, false, false);
 	}
 
 	public WorkflowExecutionSuspensionException(String message){
-		super(message);
+		super(message, null, false, false);
 	}
 }
\ No newline at end of file
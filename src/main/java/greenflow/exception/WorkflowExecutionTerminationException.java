@@ -20,10 +20,10 @@ public class WorkflowExecutionTerminationException extends RuntimeException {
 	private static final long serialVersionUID = -2170779537633200406L;
 
 	public WorkflowExecutionTerminationException(){
-		super();
+		super(null, null, false, false);
 	}
 
 	public WorkflowExecutionTerminationException(String message){
-		super(message);
+		super(message, null, false, false);
 	}
 }
\ No newline at end of file
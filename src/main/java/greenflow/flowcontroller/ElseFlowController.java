@@ -26,10 +26,11 @@ import org.springframework.stereotype.Component;
 import greenflow.predicate.concrete.FalsePredicate;
 import greenflow.predicate.concrete.NullPredicate;
 import greenflow.predicate.concrete.TruePredicate;
+import greenflow.workflow.ExecutionOutcome;
 
 @Component
 @Scope("prototype")
-public class ElseFlowController extends FlowController
+public class ElseFlowController extends FlowController implements CompilableFlowController
 {
 	private static final Logger logger = LoggerFactory.getLogger(ElseFlowController.class);
 
@@ -42,7 +43,7 @@ public class ElseFlowController extends FlowController
 	}
 
 	@Override
-	public void controlFlow()
+	public ExecutionOutcome controlFlow()
 	{
 		if (getWrapperWorkUnit().getWorkflow().getExecutionSuspensionPoint() != null)
 		{
@@ -67,10 +68,32 @@ public class ElseFlowController extends FlowController
 			logger.debug("Predicate: previous predicate evaluated to false; workunit: id: " + getWrapperWorkUnit().getBreadcrumbId() + " (" + getWrapperWorkUnit().getId() + "); predicate: name: " + getPredicate().getSymbolicName() + ", id: " + getPredicate().getId());
 			logger.debug("Entering flow controller's content...");
 
-			execute();
+			return execute();
 		}
+
+		return ExecutionOutcome.CONTINUE;
 	}
 
+	@Override
+	public boolean enterBlock()
+	{
+		setEvaluatedPredicate(getWrapperWorkUnit().getPreviousSiblingWorkUnit().getFlowController().getEvaluatedPredicate().isSatisfied() ? serviceLocator.getInstance(TruePredicate.class) : serviceLocator.getInstance(FalsePredicate.class));
+
+		return !getEvaluatedPredicate().isSatisfied();
+	}
+
+	@Override
+	public void resumeBlock()
+	{
+		setEvaluatedPredicate(serviceLocator.getInstance(FalsePredicate.class));
+	}
+
+	@Override
+	public boolean isLoop()
+	{
+		return false;
+	}
+
 	@Override
 	public String getSymbolicName()
 	{
@@ -23,15 +23,16 @@ import org.springframework.stereotype.Component;
 
 import greenflow.predicate.concrete.FalsePredicate;
 import greenflow.predicate.concrete.TruePredicate;
+import greenflow.workflow.ExecutionOutcome;
 
 @Component
 @Scope("prototype")
-public class ElseIfFlowController extends FlowController
+public class ElseIfFlowController extends FlowController implements CompilableFlowController
 {
 	private static final Logger logger = LoggerFactory.getLogger(ElseIfFlowController.class);
 
 	@Override
-	public void controlFlow()
+	public ExecutionOutcome controlFlow()
 	{
 		if (getWrapperWorkUnit().getWorkflow().getExecutionSuspensionPoint() != null)
 		{
@@ -71,7 +72,7 @@ public class ElseIfFlowController extends FlowController
 				logger.debug("Predicate: current predicate evaluated to true; workunit: id: " + getWrapperWorkUnit().getBreadcrumbId() + " (" + getWrapperWorkUnit().getId() + "); predicate: name: " + getPredicate().getSymbolicName() + ", id: " + getPredicate().getId());
 				logger.debug("Entering flow controller's content...");
 
-				execute();
+				return execute();
 			}
 			else
 			{
@@ -79,8 +80,37 @@ public class ElseIfFlowController extends FlowController
 				logger.debug("Getting out of flow controller...");
 			}
 		}
+
+		return ExecutionOutcome.CONTINUE;
 	}
 
+	@Override
+	public boolean enterBlock()
+	{
+		if (getWrapperWorkUnit().getPreviousSiblingWorkUnit().getFlowController().getEvaluatedPredicate().isSatisfied())
+		{
+			setEvaluatedPredicate(serviceLocator.getInstance(TruePredicate.class));
+
+			return false;
+		}
+
+		setEvaluatedPredicate(getPredicate().isSatisfied() ? serviceLocator.getInstance(TruePredicate.class) : serviceLocator.getInstance(FalsePredicate.class));
+
+		return getEvaluatedPredicate().isSatisfied();
+	}
+
+	@Override
+	public void resumeBlock()
+	{
+		setEvaluatedPredicate(serviceLocator.getInstance(TruePredicate.class));
+	}
+
+	@Override
+	public boolean isLoop()
+	{
+		return false;
+	}
+
 	@Override
 	public String getSymbolicName()
 	{
@@ -16,6 +16,8 @@
 
 package greenflow.flowcontroller;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,6 +30,7 @@ import com.google.common.base.Splitter;
 import greenflow.predicate.Predicate;
 import greenflow.utilities.FlowControllerTypeService;
 import greenflow.utilities.ServiceLocator;
+import greenflow.workflow.ExecutionOutcome;
 import greenflow.workunit.WorkUnit;
 
 import javax.annotation.PostConstruct;
@@ -46,8 +49,6 @@ public abstract class FlowController
 
 	private Predicate predicate;
 
-	private Predicate evaluatedPredicate;
-
 	private WorkUnit wrapperWorkUnit;
 
 	@PostConstruct
@@ -57,42 +58,48 @@ public abstract class FlowController
 		flowControllerTypeService.registerType(clazz);
 	}
 
-	abstract public void controlFlow();
+	abstract public ExecutionOutcome controlFlow();
 
 	abstract public String getSymbolicName();
 
-	public void execute()
+	public ExecutionOutcome execute()
 	{
+		List<WorkUnit> childWorkUnits = getWrapperWorkUnit().getChildWorkUnits();
+
+		int first = 0;
+
 		if (getWrapperWorkUnit().getWorkflow().getExecutionSuspensionPoint() != null)
 		{
 			if (!getWrapperWorkUnit().getWorkflow().getExecutionSuspensionPoint().equals(getWrapperWorkUnit().getBreadcrumbId()))
 			{
 				logger.debug("Traversing while looking up suspension point: flow controller workunit; workunit: id: " + getWrapperWorkUnit().getBreadcrumbId() + " (" + getWrapperWorkUnit().getId() + "); predicate: name: " + getPredicate().getSymbolicName() + ", id: " + getPredicate().getId());
 
-				for (WorkUnit workUnit :
-						getWrapperWorkUnit().getChildWorkUnits().subList(
-							Integer.parseInt(Splitter.on('.').splitToList(getWrapperWorkUnit().getWorkflow().getExecutionSuspensionPoint()).get(CharMatcher.is('.').countIn(getWrapperWorkUnit().getBreadcrumbId()) + 1)) - 1,
-							getWrapperWorkUnit().getChildWorkUnits().size())
-						)
-				{
-					workUnit.execute();
-				}
+				first = Integer.parseInt(Splitter.on('.').splitToList(getWrapperWorkUnit().getWorkflow().getExecutionSuspensionPoint()).get(CharMatcher.is('.').countIn(getWrapperWorkUnit().getBreadcrumbId()) + 1)) - 1;
 			}
 			else
 			{
 				logger.debug("Reached suspension point: " + getWrapperWorkUnit().getBreadcrumbId() + " - Starting Execution...");
+
+				return ExecutionOutcome.CONTINUE;
 			}
 		}
 
 		else
 		{
 			logger.debug("Executing: flow controller workunit; workunit: id: " + getWrapperWorkUnit().getBreadcrumbId() + " (" + getWrapperWorkUnit().getId() + "); predicate: name: " + getPredicate().getSymbolicName() + ", id: " + getPredicate().getId());
+		}
 
-			for (WorkUnit workUnit : getWrapperWorkUnit().getChildWorkUnits())
+		for (int i=first; i<childWorkUnits.size(); i++)
+		{
+			ExecutionOutcome outcome = childWorkUnits.get(i).execute();
+
+			if (outcome != ExecutionOutcome.CONTINUE)
 			{
-				workUnit.execute();
+				return outcome;
 			}
 		}
+
+		return ExecutionOutcome.CONTINUE;
 	}
 
 	public int getTypeId()
@@ -113,12 +120,12 @@ public abstract class FlowController
 
 	public Predicate getEvaluatedPredicate()
 	{
-		return evaluatedPredicate;
+		return getWrapperWorkUnit().getWorkflow().getEvaluatedPredicate(this);
 	}
 
 	public void setEvaluatedPredicate(Predicate evaluatedPredicate)
 	{
-		this.evaluatedPredicate = evaluatedPredicate;
+		getWrapperWorkUnit().getWorkflow().setEvaluatedPredicate(this, evaluatedPredicate);
 	}
 
 	public WorkUnit getWrapperWorkUnit()
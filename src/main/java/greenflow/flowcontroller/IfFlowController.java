@@ -23,15 +23,16 @@ import org.springframework.stereotype.Component;
 
 import greenflow.predicate.concrete.FalsePredicate;
 import greenflow.predicate.concrete.TruePredicate;
+import greenflow.workflow.ExecutionOutcome;
 
 @Component
 @Scope("prototype")
-public class IfFlowController extends FlowController
+public class IfFlowController extends FlowController implements CompilableFlowController
 {
 	private static final Logger logger = LoggerFactory.getLogger(IfFlowController.class);
 
 	@Override
-	public void controlFlow()
+	public ExecutionOutcome controlFlow()
 	{
 		if (getWrapperWorkUnit().getWorkflow().getExecutionSuspensionPoint() != null)
 		{
@@ -51,15 +52,37 @@ public class IfFlowController extends FlowController
 			logger.debug("Predicate: evaluated to true; workunit: id: " + getWrapperWorkUnit().getBreadcrumbId() + " (" + getWrapperWorkUnit().getId() + "); predicate: name: " + getPredicate().getSymbolicName() + ", id: " + getPredicate().getId());
 			logger.debug("Entering flow controller's content...");
 
-			execute();
+			return execute();
 		}
 		else
 		{
 			logger.debug("Predicate: evaluated to false; workunit: id: " + getWrapperWorkUnit().getBreadcrumbId() + " (" + getWrapperWorkUnit().getId() + "); predicate: name: " + getPredicate().getSymbolicName() + ", id: " + getPredicate().getId());
 			logger.debug("Getting out of flow controller...");
 		}
+
+		return ExecutionOutcome.CONTINUE;
 	}
 
+	@Override
+	public boolean enterBlock()
+	{
+		setEvaluatedPredicate(getPredicate().isSatisfied() ? serviceLocator.getInstance(TruePredicate.class) : serviceLocator.getInstance(FalsePredicate.class));
+
+		return getEvaluatedPredicate().isSatisfied();
+	}
+
+	@Override
+	public void resumeBlock()
+	{
+		setEvaluatedPredicate(serviceLocator.getInstance(TruePredicate.class));
+	}
+
+	@Override
+	public boolean isLoop()
+	{
+		return false;
+	}
+
 	@Override
 	public String getSymbolicName()
 	{
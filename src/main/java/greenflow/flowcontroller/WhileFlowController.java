@@ -23,15 +23,16 @@ import org.springframework.stereotype.Component;
 
 import greenflow.predicate.concrete.FalsePredicate;
 import greenflow.predicate.concrete.TruePredicate;
+import greenflow.workflow.ExecutionOutcome;
 
 @Component
 @Scope("prototype")
-public class WhileFlowController extends FlowController
+public class WhileFlowController extends FlowController implements CompilableFlowController
 {
 	private static final Logger logger = LoggerFactory.getLogger(WhileFlowController.class);
 
 	@Override
-	public void controlFlow()
+	public ExecutionOutcome controlFlow()
 	{
 		if (getWrapperWorkUnit().getWorkflow().getExecutionSuspensionPoint() != null && !getWrapperWorkUnit().getWorkflow().getExecutionSuspensionPoint().equals(getWrapperWorkUnit().getBreadcrumbId()))
 		{
@@ -61,11 +62,16 @@ public class WhileFlowController extends FlowController
 				getWrapperWorkUnit().getWorkflow().setExecutionSuspensionPoint(null);
 			}
 
-			execute();
+			ExecutionOutcome outcome = execute();
+
+			if (outcome != ExecutionOutcome.CONTINUE)
+			{
+				return outcome;
+			}
 
 			if (getWrapperWorkUnit().isReturnAtCompletion())
 			{
-				getWrapperWorkUnit().doReturn();
+				return getWrapperWorkUnit().doReturn();
 			}
 
 			setEvaluatedPredicate(getPredicate().isSatisfied() ? serviceLocator.getInstance(TruePredicate.class) : serviceLocator.getInstance(FalsePredicate.class));
@@ -73,8 +79,30 @@ public class WhileFlowController extends FlowController
 
 		logger.debug("Predicate: current predicate evaluated to false; workunit: id: " + getWrapperWorkUnit().getBreadcrumbId() + " (" + getWrapperWorkUnit().getId() + "); predicate: name: " + getPredicate().getSymbolicName() + ", id: " + getPredicate().getId());
 		logger.debug("Getting out of flow controller...");
+
+		return ExecutionOutcome.CONTINUE;
 	}
 
+	@Override
+	public boolean enterBlock()
+	{
+		setEvaluatedPredicate(getPredicate().isSatisfied() ? serviceLocator.getInstance(TruePredicate.class) : serviceLocator.getInstance(FalsePredicate.class));
+
+		return getEvaluatedPredicate().isSatisfied();
+	}
+
+	@Override
+	public void resumeBlock()
+	{
+		setEvaluatedPredicate(serviceLocator.getInstance(TruePredicate.class));
+	}
+
+	@Override
+	public boolean isLoop()
+	{
+		return true;
+	}
+
 	@Override
 	public String getSymbolicName()
 	{
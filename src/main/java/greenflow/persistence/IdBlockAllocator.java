@@ -0,0 +1,146 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.persistence;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import greenflow.exception.WorkflowException;
+import greenflow.utilities.GlobalWorkflowSettingsUtilities;
+
+@Repository
+public class IdBlockAllocator
+{
+	private static final Logger logger = LoggerFactory.getLogger(IdBlockAllocator.class);
+
+	public static final String workflowSequence = "workflow";
+	public static final String workunitSequence = "workunit";
+	public static final String predicateSequence = "predicate";
+	public static final String conversationSequence = "conversation";
+
+	static final String sequenceTable = "Id_Sequence";
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
+
+	private TransactionTemplate blockTransactionTemplate;
+
+	private ConcurrentMap<String, AtomicReference<IdBlock>> blocks = new ConcurrentHashMap<String, AtomicReference<IdBlock>>();
+
+	@PostConstruct
+	protected void init()
+	{
+		blockTransactionTemplate = new TransactionTemplate(transactionManager);
+		blockTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	public long nextId(String sequenceName)
+	{
+		return nextIds(sequenceName, 1);
+	}
+
+	public long nextIds(String sequenceName, int count)
+	{
+		AtomicReference<IdBlock> currentBlock = blocks.get(sequenceName);
+
+		if (currentBlock == null)
+		{
+			blocks.putIfAbsent(sequenceName, new AtomicReference<IdBlock>());
+			currentBlock = blocks.get(sequenceName);
+		}
+
+		IdBlock block = currentBlock.get();
+
+		if (block != null)
+		{
+			long firstId = block.reserve(count);
+
+			if (firstId >= 0) return firstId;
+		}
+
+		IdBlock refilledBlock = fetchBlock(sequenceName, Math.max(globalWorkflowSettings.getIdBlockSize(), count));
+
+		long firstId = refilledBlock.reserve(count);
+
+		currentBlock.compareAndSet(block, refilledBlock);
+
+		return firstId;
+	}
+
+	private IdBlock fetchBlock(final String sequenceName, final int size)
+	{
+		long end = blockTransactionTemplate.execute(new TransactionCallback<Long>() {
+				public Long doInTransaction(TransactionStatus status) {
+					int updated = jdbcTemplate.update("update " + sequenceTable + " set next_value = next_value + ? where name = ?", size, sequenceName);
+
+					if (updated == 0) throw new WorkflowException("Unknown id sequence: " + sequenceName);
+
+					return jdbcTemplate.queryForObject("select next_value from " + sequenceTable + " where name = ?", Long.class, sequenceName);
+				}
+			});
+
+		logger.debug("Allocated id block [" + (end - size) + ", " + end + ") for sequence: " + sequenceName);
+
+		return new IdBlock(end - size, end);
+	}
+
+	private static class IdBlock
+	{
+		private final AtomicLong next;
+
+		private final long end;
+
+		IdBlock(long start, long end)
+		{
+			this.next = new AtomicLong(start);
+			this.end = end;
+		}
+
+		long reserve(int count)
+		{
+			while (true)
+			{
+				long current = next.get();
+
+				if (current + count > end) return -1;
+
+				if (next.compareAndSet(current, current + count)) return current;
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,284 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import greenflow.context.WorkflowContext;
+import greenflow.exception.WorkflowException;
+import greenflow.utilities.GlobalWorkflowSettingsUtilities;
+import greenflow.workflow.Workflow;
+
+@Repository
+public class MappedFileWorkflowRepository implements WorkflowDefinitionRepository
+{
+	private static final Logger logger = LoggerFactory.getLogger(MappedFileWorkflowRepository.class);
+
+	static final int magic = 0x47464d52;
+
+	static final short formatVersion = 1;
+
+	static final int headerLength = 6;
+
+	static final int minimumHeadroom = 1 << 16;
+
+	@Autowired
+	private WorkflowSnapshotCodec workflowSnapshotCodec;
+
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
+
+	private FileChannel channel;
+
+	private volatile MappedByteBuffer mappedBuffer;
+
+	private int end;
+
+	private Map<Long, Integer> offsetsById = new ConcurrentHashMap<Long, Integer>();
+
+	private Map<String, Long> idsByName = new ConcurrentHashMap<String, Long>();
+
+	public Workflow retrieveConfigurationWorkflow(long workflowId)
+	{
+		return retrieveConfigurationWorkflow(workflowId, null);
+	}
+
+	public Workflow retrieveConfigurationWorkflow(long workflowId, WorkflowContext workflowContext)
+	{
+		open();
+
+		Integer offset = offsetsById.get(workflowId);
+
+		if (offset == null) throw new WorkflowException("Workflow id: " + workflowId + " is not stored in " + globalWorkflowSettings.getDefinitionFile());
+
+		ByteBuffer record = mappedBuffer.duplicate();
+		record.position(offset + 4 + 8);
+
+		int version = record.getInt();
+		String name = readName(record);
+
+		int snapshotLength = record.getInt();
+
+		ByteBuffer snapshot = record.slice();
+		snapshot.limit(snapshotLength);
+
+		Workflow workflow = workflowSnapshotCodec.decode(snapshot, workflowContext);
+
+		workflow.setId(workflowId);
+		workflow.setName(name);
+		workflow.setVersion(version);
+
+		return workflow;
+	}
+
+	public long retrieveWorkflowId(String workflowName)
+	{
+		open();
+
+		Long workflowId = idsByName.get(workflowName);
+
+		return (workflowId != null ? workflowId : 0);
+	}
+
+	public List<Long> retrieveWorkflowIds()
+	{
+		open();
+
+		return new ArrayList<Long>(offsetsById.keySet());
+	}
+
+	public synchronized boolean storeWorkflow(Workflow workflow)
+	{
+		if (workflow.getId() == 0) throw new WorkflowException("Only persisted workflows can be stored in " + globalWorkflowSettings.getDefinitionFile());
+
+		open();
+
+		Integer storedOffset = offsetsById.get(workflow.getId());
+
+		if (storedOffset != null && mappedBuffer.getInt(storedOffset + 4 + 8) == workflow.getVersion()) return false;
+
+		byte[] name = workflow.getName().getBytes(StandardCharsets.UTF_8);
+		byte[] snapshot = workflowSnapshotCodec.encode(workflow);
+
+		ByteBuffer record = ByteBuffer.allocate(4 + 8 + 4 + 4 + name.length + 4 + snapshot.length);
+
+		record.position(4);
+		record.putLong(workflow.getId());
+		record.putInt(workflow.getVersion());
+		record.putInt(name.length);
+		record.put(name);
+		record.putInt(snapshot.length);
+		record.put(snapshot);
+		record.position(4);
+
+		try
+		{
+			long required = (long) end + record.capacity();
+
+			if (required > Integer.MAX_VALUE) throw new WorkflowException("Definition file is full: " + globalWorkflowSettings.getDefinitionFile());
+
+			if (required > mappedBuffer.capacity()) mappedBuffer = map(Math.min(Math.max(required * 2, required + minimumHeadroom), Integer.MAX_VALUE));
+
+			ByteBuffer target = mappedBuffer.duplicate();
+			target.position(end + 4);
+			target.put(record);
+
+			mappedBuffer.force();
+
+			mappedBuffer.putInt(end, record.capacity() - 4);
+
+			mappedBuffer.force();
+
+			index(mappedBuffer, end);
+
+			end = (int) required;
+
+			return true;
+		}
+		catch (IOException e)
+		{
+			throw new WorkflowException("Unable to store workflow id: " + workflow.getId() + " in " + globalWorkflowSettings.getDefinitionFile());
+		}
+	}
+
+	private void open()
+	{
+		if (mappedBuffer != null) return;
+
+		synchronized (this)
+		{
+			if (mappedBuffer != null) return;
+
+			File file = new File(globalWorkflowSettings.getDefinitionFile());
+
+			try
+			{
+				if (file.getParentFile() != null) file.getParentFile().mkdirs();
+
+				channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+				if (channel.size() == 0)
+				{
+					ByteBuffer header = ByteBuffer.allocate(headerLength);
+					header.putInt(magic);
+					header.putShort(formatVersion);
+					header.flip();
+
+					channel.write(header, 0);
+					channel.force(false);
+				}
+
+				MappedByteBuffer buffer = map(channel.size());
+
+				if (buffer.getInt(0) != magic || buffer.getShort(4) != formatVersion) throw new WorkflowException("Unsupported definition file: " + file);
+
+				int offset = headerLength;
+
+				while (offset + 4 <= buffer.limit())
+				{
+					int recordLength = buffer.getInt(offset);
+
+					if (recordLength <= 0 || offset + 4 + recordLength > buffer.limit()) break;
+
+					index(buffer, offset);
+
+					offset = offset + 4 + recordLength;
+				}
+
+				if (offset + 4 <= buffer.limit() && buffer.getInt(offset) != 0)
+				{
+					logger.warn("Discarding incomplete record at offset " + offset + " of " + file);
+
+					buffer.putInt(offset, 0);
+					buffer.force();
+				}
+
+				end = offset;
+
+				mappedBuffer = buffer;
+
+				logger.info("Opened definition file " + file + " with " + offsetsById.size() + " workflow(s)");
+			}
+			catch (IOException e)
+			{
+				throw new WorkflowException("Unable to open definition file: " + file);
+			}
+		}
+	}
+
+	private MappedByteBuffer map(long size) throws IOException
+	{
+		return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+	}
+
+	private void index(MappedByteBuffer buffer, int offset)
+	{
+		ByteBuffer record = buffer.duplicate();
+		record.position(offset + 4);
+
+		long workflowId = record.getLong();
+		record.getInt();
+
+		String name = readName(record);
+
+		Integer previousOffset = offsetsById.put(workflowId, offset);
+
+		if (previousOffset != null)
+		{
+			ByteBuffer previousRecord = buffer.duplicate();
+			previousRecord.position(previousOffset + 4 + 8 + 4);
+
+			String previousName = readName(previousRecord);
+
+			if (!previousName.equals(name)) idsByName.remove(previousName, workflowId);
+		}
+
+		idsByName.put(name, workflowId);
+	}
+
+	private String readName(ByteBuffer record)
+	{
+		byte[] name = new byte[record.getInt()];
+
+		record.get(name);
+
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	@PreDestroy
+	protected synchronized void close() throws IOException
+	{
+		if (channel != null) channel.close();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,40 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.persistence;
+
+public final class TypedValue
+{
+	private final short type;
+
+	private final byte[] bytes;
+
+	public TypedValue(short type, byte[] bytes)
+	{
+		this.type = type;
+		this.bytes = bytes;
+	}
+
+	public short getType()
+	{
+		return type;
+	}
+
+	public byte[] getBytes()
+	{
+		return bytes;
+	}
+}
\ No newline at end of file
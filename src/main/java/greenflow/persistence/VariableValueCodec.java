@@ -0,0 +1,295 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import greenflow.exception.WorkflowException;
+
+@Service
+public class VariableValueCodec
+{
+	public static final short nullType = 0;
+	public static final short stringType = 1;
+	public static final short booleanType = 2;
+	public static final short integerType = 3;
+	public static final short longType = 4;
+	public static final short doubleType = 5;
+	public static final short floatType = 6;
+	public static final short bigDecimalType = 7;
+	public static final short bytesType = 8;
+	public static final short listType = 9;
+	public static final short mapType = 10;
+	public static final short shortType = 11;
+	public static final short byteType = 12;
+
+	static final short firstRegisteredType = 32;
+
+	static final int maxEncodedLength = 65536;
+
+	@Autowired(required = false)
+	private List<VariableTypeCodec<?>> variableTypeCodecs = new ArrayList<VariableTypeCodec<?>>();
+
+	private Map<Short, VariableTypeCodec<?>> codecsByTypeId = new HashMap<Short, VariableTypeCodec<?>>();
+
+	private ConcurrentMap<Class<?>, VariableTypeCodec<?>> codecsByClass = new ConcurrentHashMap<Class<?>, VariableTypeCodec<?>>();
+
+	@PostConstruct
+	protected void init()
+	{
+		for (VariableTypeCodec<?> variableTypeCodec : variableTypeCodecs)
+		{
+			if (variableTypeCodec.getTypeId() < firstRegisteredType)
+			{
+				throw new WorkflowException("Variable type id " + variableTypeCodec.getTypeId() + " of " + variableTypeCodec.getClass().getName() + " is reserved");
+			}
+
+			if (codecsByTypeId.put(variableTypeCodec.getTypeId(), variableTypeCodec) != null)
+			{
+				throw new WorkflowException("Variable type id " + variableTypeCodec.getTypeId() + " is registered more than once");
+			}
+		}
+	}
+
+	public TypedValue encode(String variableName, Object value)
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		short type = typeOf(value);
+
+		try (DataOutputStream out = new DataOutputStream(bytes))
+		{
+			writePayload(out, type, value);
+		}
+		catch (IOException e)
+		{
+			throw new WorkflowException("Unable to encode value of variable: " + variableName + ", type: " + value.getClass().getName());
+		}
+
+		if (bytes.size() > maxEncodedLength)
+		{
+			throw new WorkflowException("Value of variable: " + variableName + " encodes to " + bytes.size() + " bytes, more than the " + maxEncodedLength + " bytes an assigned variable can hold");
+		}
+
+		return new TypedValue(type, bytes.toByteArray());
+	}
+
+	public Object decode(TypedValue typedValue)
+	{
+		return readPayload(ByteBuffer.wrap(typedValue.getBytes()), typedValue.getType());
+	}
+
+	private short typeOf(Object value)
+	{
+		if (value == null) return nullType;
+		if (value instanceof String) return stringType;
+		if (value instanceof Boolean) return booleanType;
+		if (value instanceof Integer) return integerType;
+		if (value instanceof Short) return shortType;
+		if (value instanceof Byte) return byteType;
+		if (value instanceof Long) return longType;
+		if (value instanceof Double) return doubleType;
+		if (value instanceof Float) return floatType;
+		if (value instanceof BigDecimal) return bigDecimalType;
+		if (value instanceof byte[]) return bytesType;
+		if (value instanceof List) return listType;
+		if (value instanceof Map) return mapType;
+
+		VariableTypeCodec<?> variableTypeCodec = codecOf(value.getClass());
+
+		return (variableTypeCodec != null ? variableTypeCodec.getTypeId() : stringType);
+	}
+
+	private VariableTypeCodec<?> codecOf(Class<?> valueClass)
+	{
+		VariableTypeCodec<?> variableTypeCodec = codecsByClass.get(valueClass);
+
+		if (variableTypeCodec == null)
+		{
+			for (VariableTypeCodec<?> candidate : variableTypeCodecs)
+			{
+				if (candidate.getType().isAssignableFrom(valueClass))
+				{
+					variableTypeCodec = candidate;
+
+					codecsByClass.put(valueClass, variableTypeCodec);
+
+					break;
+				}
+			}
+		}
+
+		return variableTypeCodec;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void writePayload(DataOutputStream out, short type, Object value) throws IOException
+	{
+		switch (type)
+		{
+			case nullType:
+				break;
+			case stringType:
+				writeBytes(out, value.toString().getBytes(StandardCharsets.UTF_8));
+				break;
+			case booleanType:
+				out.writeBoolean((Boolean) value);
+				break;
+			case integerType:
+				out.writeInt((Integer) value);
+				break;
+			case shortType:
+				out.writeShort((Short) value);
+				break;
+			case byteType:
+				out.writeByte((Byte) value);
+				break;
+			case longType:
+				out.writeLong((Long) value);
+				break;
+			case doubleType:
+				out.writeDouble((Double) value);
+				break;
+			case floatType:
+				out.writeFloat((Float) value);
+				break;
+			case bigDecimalType:
+				out.writeInt(((BigDecimal) value).scale());
+				writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+				break;
+			case bytesType:
+				writeBytes(out, (byte[]) value);
+				break;
+			case listType:
+				out.writeInt(((List<?>) value).size());
+				for (Object element : (List<?>) value) writeValue(out, element);
+				break;
+			case mapType:
+				out.writeInt(((Map<?, ?>) value).size());
+				for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+				{
+					writeValue(out, entry.getKey());
+					writeValue(out, entry.getValue());
+				}
+				break;
+			default:
+				writeBytes(out, ((VariableTypeCodec<Object>) codecsByTypeId.get(type)).encode(value));
+		}
+	}
+
+	private void writeValue(DataOutputStream out, Object value) throws IOException
+	{
+		short type = typeOf(value);
+
+		out.writeShort(type);
+
+		writePayload(out, type, value);
+	}
+
+	private void writeBytes(DataOutputStream out, byte[] bytes) throws IOException
+	{
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private Object readPayload(ByteBuffer buffer, short type)
+	{
+		switch (type)
+		{
+			case nullType:
+				return null;
+			case stringType:
+				return readString(buffer);
+			case booleanType:
+				return buffer.get() != 0;
+			case integerType:
+				return buffer.getInt();
+			case shortType:
+				return buffer.getShort();
+			case byteType:
+				return buffer.get();
+			case longType:
+				return buffer.getLong();
+			case doubleType:
+				return buffer.getDouble();
+			case floatType:
+				return buffer.getFloat();
+			case bigDecimalType:
+				int scale = buffer.getInt();
+				return new BigDecimal(new BigInteger(readBytes(buffer)), scale);
+			case bytesType:
+				return readBytes(buffer);
+			case listType:
+				int size = buffer.getInt();
+				List<Object> list = new ArrayList<Object>(size);
+				for (int i=0; i<size; i++) list.add(readValue(buffer));
+				return list;
+			case mapType:
+				int entries = buffer.getInt();
+				Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+				for (int i=0; i<entries; i++) map.put(readValue(buffer), readValue(buffer));
+				return map;
+			default:
+				VariableTypeCodec<?> variableTypeCodec = codecsByTypeId.get(type);
+				if (variableTypeCodec == null) throw new WorkflowException("Unknown variable type id: " + type);
+				return variableTypeCodec.decode(readBytes(buffer));
+		}
+	}
+
+	private Object readValue(ByteBuffer buffer)
+	{
+		return readPayload(buffer, buffer.getShort());
+	}
+
+	private byte[] readBytes(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getInt()];
+
+		buffer.get(bytes);
+
+		return bytes;
+	}
+
+	private String readString(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+
+		String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+
+		buffer.position(buffer.position() + length);
+
+		return string;
+	}
+}
\ No newline at end of file
@@ -16,9 +16,9 @@
 
 package greenflow.persistence;
 
+import java.nio.ByteBuffer;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Types;
 import java.util.*;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -26,40 +26,38 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.ResultSetExtractor;
-import org.springframework.jdbc.core.SqlOutParameter;
-import org.springframework.jdbc.core.SqlParameter;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.object.GenericStoredProcedure;
-import org.springframework.jdbc.object.StoredProcedure;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import greenflow.command.Command;
 import greenflow.context.WorkflowContext;
+import greenflow.exception.WorkflowException;
 import greenflow.flowcontroller.FlowController;
 import greenflow.predicate.Predicate;
 import greenflow.predicate.Predicates;
 import greenflow.predicate.concrete.TruePredicate;
-import greenflow.predicate.relation.AndPredicate;
-import greenflow.predicate.relation.NotPredicate;
-import greenflow.predicate.relation.OrPredicate;
 import greenflow.predicate.relation.PredicateArray;
 import greenflow.utilities.*;
 import greenflow.workflow.Workflow;
+import greenflow.workunit.ChildWorkUnitLoader;
 import greenflow.workunit.WorkUnit;
 
-import javax.sql.DataSource;
+import javax.annotation.PostConstruct;
 
 @Repository
-public class WorkflowConfigurationDao {
+public class WorkflowConfigurationDao implements WorkflowDefinitionRepository {
+	private static final Logger logger = LoggerFactory.getLogger(WorkflowConfigurationDao.class);
+
 	@Autowired
 	private TransactionTemplate transactionTemplate;
 
@@ -83,7 +81,24 @@ public class WorkflowConfigurationDao {
 
 	@Autowired
 	private Predicates predicates;
+
+	@Autowired
+	private WorkflowDefinitionCache workflowDefinitionCache;
 
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
+
+	@Autowired
+	private IdBlockAllocator idBlockAllocator;
+
+	@Autowired
+	private WorkflowSnapshotCodec workflowSnapshotCodec;
+
+	@Autowired
+	private MappedFileWorkflowRepository mappedFileWorkflowRepository;
+
+	private JdbcTemplate definitionJdbcTemplate;
+
 	static final String workflowTable = "Configuration_Workflow";
 	static final String workunitTable = "Configuration_Workunit";
 	static final String treePathTable = "Configuration_TreePath";
@@ -91,471 +106,589 @@ public class WorkflowConfigurationDao {
 	static final String declaredVariableTable = "Configuration_Declared_Variable";
 	static final String parameterTable = "Configuration_Parameter";
 	static final String returnedVariableTable = "Configuration_Returned_Variable";
-
+	static final String assignedVariableTable = "Execution_Assigned_Variable";
+	static final String conversationTable = "Execution_Conversation";
+
+	static final String activeConversationCondition = "c.workflow_id = ? and (c.last_transaction_ordinal = 0 or c.suspension_point is not null)";
+
+	static final String workflowCondition = "w.workflow_id = ?";
+	static final String rootCondition = "w.workflow_id = ? and not exists (select t.ancestor from " + treePathTable + " t where t.descendant = w.id and t.length = 1)";
+	static final String childCondition = "w.id in (select t.descendant from " + treePathTable + " t where t.ancestor = ? and t.length = 1)";
+
+	private final ChildWorkUnitLoader childWorkUnitLoader = new ChildWorkUnitLoader() {
+			public List<WorkUnit> loadChildWorkUnits(WorkUnit parentWorkUnit) {
+				Map<Long, Integer> ordinals = new HashMap<>();
+
+				Map<Long, WorkUnit> childWorkUnits = retrieveWorkUnitDefinitions(childCondition, parentWorkUnit.getId(), ordinals, true);
+
+				logger.debug("Loaded " + childWorkUnits.size() + " child work unit(s) of work unit id: " + parentWorkUnit.getId());
+
+				return Arrays.asList(orderSiblings(new ArrayList<WorkUnit>(childWorkUnits.values()), ordinals));
+			}
+		};
+
 	static final short containerBlockDiscriminator = 0;
 	static final short flowControllerDiscriminator = 1;
 	static final short commandDiscriminator = 2;
 
+	@PostConstruct
+	protected void init()
+	{
+		definitionJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+		definitionJdbcTemplate.setFetchSize(globalWorkflowSettings.getDefinitionFetchSize());
+	}
+
 	public Workflow retrieveConfigurationWorkflow(long workflowId, WorkflowContext workflowContext) {
-		String sql =
-		"select " +
-		workunitTable + ".*, " +
-		predicateTable + ".*, " +
-		declaredVariableTable + ".*, " +
-		parameterTable + ".*, " +
-		returnedVariableTable + ".*, " +
-
-		"x.descendant, " +
-
-		"x.ancestors as ancestors " +
-		"from " +
-		treePathTable + " " +
-		"join " + workunitTable + " on " + treePathTable + ".descendant = " + workunitTable + ".id " +
-
-		"left join " + predicateTable + " on " + predicateTable + ".workunit_id = " + workunitTable + ".id " +
-		"left join " + declaredVariableTable + " on " + declaredVariableTable + ".workunit_id = " + workunitTable + ".id " +
-
-		"left join " + parameterTable + " on (" + parameterTable + ".workunit_id = " + workunitTable + ".id " + " or " + parameterTable + ".predicate_id = " + predicateTable + ".id) " +
-		"left join " + returnedVariableTable + " on " + returnedVariableTable + ".workunit_id = " + workunitTable + ".id " +
-
-		"left join (" +
-				"select " + treePathTable + ".descendant, group_concat(distinct " + treePathTable + ".ancestor) as ancestors " +
-				"from " + treePathTable + " " +
-				"group by " + treePathTable + ".descendant" +
-				") x " +
-				"on x.descendant = " + workunitTable + ".id " +
-
-		"where " + workunitTable + ".workflow_id = ? " +
-
-		"order by "  + predicateTable + ".id desc, " + 
-
-		declaredVariableTable + ".variable_ordinal asc, " + parameterTable + ".parameter_ordinal asc"; 
-
-		List<Pair<WorkUnit, List<Long>>> workunitsAndTheirAncestorsList = jdbcTemplate.query(sql, new Object[] {workflowId}, 
-				new ResultSetExtractor<List<Pair<WorkUnit, List<Long>>>>()
-				{
-					public List<Pair<WorkUnit, List<Long>>> extractData(ResultSet resultSet) throws SQLException, DataAccessException
-					{
-						EnhancedResultSet enhancedResultSet = new EnhancedResultSet(resultSet);
-
-						Map<Long, Triple<WorkUnit, List<Long>, Map<Long, Pair<Predicate, Long>>>> map = new HashMap<>();
-						WorkUnit workUnit = null;
-
-						Map<Long, List<Predicate>> parentPredicateMap = new HashMap<>();
-
-						Map<Long, Predicate> discoveredPredicates = new HashMap<>();
-
-						while (resultSet.next())
-						{
-							long id = enhancedResultSet.get(workunitTable, "id");
-
-							Triple<WorkUnit, List<Long>, Map<Long, Pair<Predicate, Long>>> triple = map.get(id);
-
-							if(triple == null) 
-							{
-								if (enhancedResultSet.<Integer>get(workunitTable, "discriminator") == flowControllerDiscriminator)
-								{
-									FlowController flowController;
-
-									flowController = serviceLocator.getInstance(flowControllerTypeService.getTypeClass(enhancedResultSet.get(workunitTable, "type")));
-									flowController.setPredicate(serviceLocator.getInstance(TruePredicate.class));
-
-									workUnit = new WorkUnit(flowController);
-								}
-
-								else if (enhancedResultSet.<Integer>get(workunitTable, "discriminator") == commandDiscriminator)
-								{
-									Command<?> command = null;
-
-									command = serviceLocator.getInstance(commandTypeService.getTypeClass(enhancedResultSet.<Integer>get(workunitTable, "type")));
-
-									if (!enhancedResultSet.isNull(workunitTable, "assign_to"))
-									{
-										command.setAssignTo(enhancedResultSet.<String>get(workunitTable, "assign_to"));
-									}
-
-									workUnit = new WorkUnit(command);
-								}
-
-								else
-								{
-									workUnit = new WorkUnit();
-								}
-
-								workUnit.setId(id);
-
-								workUnit.setReturnAtCompletion(Optional.ofNullable(enhancedResultSet.<Boolean>get(workunitTable, "return")).orElse(false));
-								workUnit.setPersistAfterReturn(Optional.ofNullable(enhancedResultSet.<Boolean>get(workunitTable, "persist_after_return")).orElse(false));
-
-								List<Long> ancestorList = new ArrayList<Long>();
-								for (String s : Arrays.asList(enhancedResultSet.<String>get("ancestors").split("\\s*,\\s*"))) ancestorList.add(Long.valueOf(s));
-
-								map.put(id, triple = new ImmutableTriple<WorkUnit, List<Long>, Map<Long, Pair<Predicate, Long>>>(workUnit, ancestorList, new HashMap<>()));
-							}
-
-							workUnit = triple.getLeft();
-
-							if (!enhancedResultSet.isNull(predicateTable, "id"))
-							{
-								long predicateId = enhancedResultSet.get(predicateTable, "id");
-
-								if (!discoveredPredicates.containsKey(predicateId)) 
-								{
-									Predicate predicate = null;
-
-									Class<? extends Predicate> clazz = predicateTypeService.getTypeClass(enhancedResultSet.<Integer>get(predicateTable, "type"));
-
-									if (!parentPredicateMap.containsKey(predicateId)) {
-										predicate = serviceLocator.getInstance(clazz);
-									}
-
-									else {
-										List<Predicate> childPredicates = parentPredicateMap.get(predicateId);
-
-										if (clazz == AndPredicate.class)
-										{
-											predicate = (AndPredicate) serviceLocator.getInstance(clazz, new PredicateArray(childPredicates.stream().toArray(Predicate[]::new)));
-										}
-										if (clazz == OrPredicate.class)
-										{
-											predicate = (OrPredicate) serviceLocator.getInstance(clazz, new PredicateArray(childPredicates.stream().toArray(Predicate[]::new)));
-										}
-										else if (clazz == NotPredicate.class) {
-											predicate = (NotPredicate) serviceLocator.getInstance(clazz, new PredicateArray(childPredicates.stream().toArray(Predicate[]::new)));
-										}
-									}
-
-									predicate.setId(predicateId);
-
-									if (!enhancedResultSet.isNull(predicateTable, "parent_predicate_id")) {
-										long parentPredicateId = enhancedResultSet.get(predicateTable, "parent_predicate_id");
-
-										List<Predicate> siblingPredicates = parentPredicateMap.get(parentPredicateId);
-
-										if (siblingPredicates == null) {
-											siblingPredicates = new ArrayList<>();
-											parentPredicateMap.put(parentPredicateId, siblingPredicates);
-										}
-
-										siblingPredicates.add(predicate);
-									} else 
-									{
-										triple.getLeft().getFlowController().setPredicate(predicate);
-									}
-
-									discoveredPredicates.put(predicateId, predicate);
-								}
-							}
-
-							if (!enhancedResultSet.isNull(declaredVariableTable, "workunit_id") && workUnit.getVariables().size() == enhancedResultSet.<Integer>get(declaredVariableTable, "variable_ordinal"))
-							{
-								workUnit.getVariables().put(enhancedResultSet.<String>get(declaredVariableTable, "name"), enhancedResultSet.<String>get(declaredVariableTable, "value"));
-							}
-
-							if (!enhancedResultSet.isNull(parameterTable, "variable_name"))
-							{
-								if (!enhancedResultSet.isNull(parameterTable, "workunit_id") && workUnit.getCommand().getParameters().size() == enhancedResultSet.<Integer>get(parameterTable, "parameter_ordinal"))
-								{
-									workUnit.getCommand().getParameters().add(enhancedResultSet.<String>get(parameterTable, "variable_name"));
-								}
-
-								if (!enhancedResultSet.isNull(parameterTable, "predicate_id") && discoveredPredicates.get(enhancedResultSet.<Long>get(parameterTable, "predicate_id")).getParameters().size() == enhancedResultSet.<Integer>get(parameterTable, "parameter_ordinal"))
-								{
-									discoveredPredicates.get(enhancedResultSet.get(parameterTable, "predicate_id")).getParameters().add(enhancedResultSet.<String>get(parameterTable, "variable_name"));
-								}
-							}
-
-							if (!enhancedResultSet.isNull(returnedVariableTable, "workunit_id") && workUnit.getReturnedVariables().size() == enhancedResultSet.<Integer>get(returnedVariableTable, "variable_ordinal"))
-							{
-								workUnit.getReturnedVariables().add(enhancedResultSet.<String>get(returnedVariableTable, "variable_name"));
-							}
-						}
-
-						List<Triple<WorkUnit, List<Long>, Map<Long, Pair<Predicate, Long>>>> list = new ArrayList<Triple<WorkUnit, List<Long>, Map<Long, Pair<Predicate, Long>>>>(map.values());
-
-						List<Pair<WorkUnit, List<Long>>> workunitsAndTheirAncestorsList = new ArrayList<>();
-
-						for (Triple<WorkUnit, List<Long>, Map<Long, Pair<Predicate, Long>>> triple : list) workunitsAndTheirAncestorsList.add(new ImmutablePair<WorkUnit, List<Long>>(triple.getLeft(), triple.getMiddle()));
-
-						return workunitsAndTheirAncestorsList;
-					}
+		String sql = "select name, version, snapshot from " + workflowTable + " where id = ?";
+
+		Triple<String, Integer, byte[]> header = jdbcTemplate.queryForObject(sql, new Object[] {workflowId}, new RowMapper<Triple<String, Integer, byte[]>>() {
+				public Triple<String, Integer, byte[]> mapRow(ResultSet resultSet, int i) throws SQLException {
+					return new ImmutableTriple<String, Integer, byte[]>(resultSet.getString("name"), resultSet.getInt("version"), resultSet.getBytes("snapshot"));
 				}
-			);
-
-		Workflow workflow = buildTree(workunitsAndTheirAncestorsList, workflowContext);
-
+			});
+
+		Workflow workflow;
+
+		if (globalWorkflowSettings.isDefinitionLazyLoading())
+		{
+			workflow = retrieveLazyWorkflow(workflowId, workflowContext);
+		}
+		else if (header.getRight() != null && workflowSnapshotCodec.isSupported(ByteBuffer.wrap(header.getRight())))
+		{
+			workflow = workflowSnapshotCodec.decode(ByteBuffer.wrap(header.getRight()), workflowContext);
+		}
+		else
+		{
+			workflow = retrieveRelationalWorkflow(workflowId, workflowContext);
+		}
+
 		workflow.setId(workflowId);
+
+		workflow.setName(header.getLeft());
+		workflow.setVersion(header.getMiddle());
+
+		return workflow;
+	}
+
+	private Workflow retrieveRelationalWorkflow(long workflowId, WorkflowContext workflowContext)
+	{
+		Map<Long, Integer> ordinals = new HashMap<>();
 
-		sql = "select " + workflowTable + ".name from " + workflowTable + " where " + workflowTable + ".id = " + workflowId;
-		String name = namedParameterJdbcTemplate.queryForObject(sql, new MapSqlParameterSource(new HashMap<String, Object>()), String.class);
-
-		workflow.setName(name);
+		Map<Long, WorkUnit> workUnits = retrieveWorkUnitDefinitions(workflowCondition, workflowId, ordinals, false);
+
+		Map<Long, Long> parentIds = retrieveParentIds(workflowId);
 
-		return workflow;
+		return buildTree(workUnits, parentIds, ordinals, workflowContext);
+	}
+
+	private Workflow retrieveLazyWorkflow(long workflowId, WorkflowContext workflowContext)
+	{
+		Map<Long, WorkUnit> rootWorkUnits = retrieveWorkUnitDefinitions(rootCondition, workflowId, new HashMap<Long, Integer>(), true);
+
+		Workflow workflow = new Workflow(workflowContext);
+
+		workflow.setAsRootWorkUnit(rootWorkUnits.values().iterator().next());
+
+		return workflow;
+	}
+
+	private Map<Long, WorkUnit> retrieveWorkUnitDefinitions(String condition, Object parameter, Map<Long, Integer> ordinals, boolean lazy)
+	{
+		Map<Long, WorkUnit> workUnits = retrieveWorkUnits(condition, parameter, ordinals);
+
+		if (!workUnits.isEmpty())
+		{
+			Map<Long, Predicate> predicatesById = retrievePredicates(condition, parameter, workUnits);
+
+			retrieveDeclaredVariables(condition, parameter, workUnits);
+
+			retrieveParameters(condition, parameter, workUnits, predicatesById);
+
+			retrieveReturnedVariables(condition, parameter, workUnits);
+
+			if (lazy)
+			{
+				for (WorkUnit workUnit : workUnits.values())
+				{
+					if (!workUnit.isCommand()) workUnit.setChildWorkUnitLoader(childWorkUnitLoader);
+				}
+			}
+		}
+
+		return workUnits;
+	}
+
+	private Map<Long, WorkUnit> retrieveWorkUnits(String condition, Object parameter, final Map<Long, Integer> ordinals)
+	{
+		String sql = "select w.id, w.ordinal, w.discriminator, w.type, w.\"return\", w.persist_after_return, w.assign_to from " + workunitTable + " w where " + condition;
+
+		final Map<Long, WorkUnit> workUnits = new LinkedHashMap<>();
+
+		definitionJdbcTemplate.query(sql, new Object[] {parameter}, new RowCallbackHandler() {
+				public void processRow(ResultSet resultSet) throws SQLException {
+					WorkUnit workUnit;
+
+					short discriminator = resultSet.getShort("discriminator");
+
+					if (discriminator == flowControllerDiscriminator)
+					{
+						FlowController flowController = serviceLocator.getInstance(flowControllerTypeService.getTypeClass(resultSet.getInt("type")));
+						flowController.setPredicate(serviceLocator.getInstance(TruePredicate.class));
+
+						workUnit = new WorkUnit(flowController);
+					}
+					else if (discriminator == commandDiscriminator)
+					{
+						Command<?> command = serviceLocator.getInstance(commandTypeService.getTypeClass(resultSet.getInt("type")));
+
+						command.setAssignTo(resultSet.getString("assign_to"));
+
+						workUnit = new WorkUnit(command);
+					}
+					else
+					{
+						workUnit = new WorkUnit();
+					}
+
+					workUnit.setId(resultSet.getLong("id"));
+
+					workUnit.setReturnAtCompletion(resultSet.getBoolean("return"));
+					workUnit.setPersistAfterReturn(resultSet.getBoolean("persist_after_return"));
+
+					int ordinal = resultSet.getInt("ordinal");
+
+					ordinals.put(workUnit.getId(), resultSet.wasNull() ? -1 : ordinal);
+
+					workUnits.put(workUnit.getId(), workUnit);
+				}
+			});
+
+		return workUnits;
+	}
+
+	private Map<Long, Long> retrieveParentIds(long workflowId)
+	{
+		String sql = "select t.ancestor, t.descendant from " + treePathTable + " t join " + workunitTable + " w on t.descendant = w.id where w.workflow_id = ? and t.length = 1";
+
+		final Map<Long, Long> parentIds = new HashMap<>();
+
+		definitionJdbcTemplate.query(sql, new Object[] {workflowId}, new RowCallbackHandler() {
+				public void processRow(ResultSet resultSet) throws SQLException {
+					parentIds.put(resultSet.getLong("descendant"), resultSet.getLong("ancestor"));
+				}
+			});
+
+		return parentIds;
+	}
+
+	private Map<Long, Predicate> retrievePredicates(String condition, Object parameter, Map<Long, WorkUnit> workUnits)
+	{
+		String sql = "select p.id, p.workunit_id, p.parent_predicate_id, p.type from " + predicateTable + " p join " + workunitTable + " w on p.workunit_id = w.id where " + condition + " order by p.id desc";
+
+		final List<long[]> predicateRows = new ArrayList<>();
+
+		definitionJdbcTemplate.query(sql, new Object[] {parameter}, new RowCallbackHandler() {
+				public void processRow(ResultSet resultSet) throws SQLException {
+					long parentPredicateId = resultSet.getLong("parent_predicate_id");
+
+					predicateRows.add(new long[] {resultSet.getLong("id"), resultSet.getLong("workunit_id"), resultSet.wasNull() ? 0 : parentPredicateId, resultSet.getInt("type")});
+				}
+			});
+
+		Map<Long, Predicate> predicatesById = new HashMap<>();
+
+		Map<Long, List<Predicate>> parentPredicateMap = new HashMap<>();
+
+		for (long[] predicateRow : predicateRows)
+		{
+			long predicateId = predicateRow[0];
+
+			Predicate predicate = null;
+
+			Class<? extends Predicate> clazz = predicateTypeService.getTypeClass((int) predicateRow[3]);
+
+			List<Predicate> childPredicates = parentPredicateMap.get(predicateId);
+
+			if (childPredicates == null)
+			{
+				predicate = serviceLocator.getInstance(clazz);
+			}
+			else
+			{
+				Collections.reverse(childPredicates);
+
+				predicate = serviceLocator.getInstance(clazz, new PredicateArray(childPredicates.stream().toArray(Predicate[]::new)));
+			}
+
+			predicate.setId(predicateId);
+
+			if (predicateRow[2] != 0)
+			{
+				List<Predicate> siblingPredicates = parentPredicateMap.get(predicateRow[2]);
+
+				if (siblingPredicates == null)
+				{
+					parentPredicateMap.put(predicateRow[2], siblingPredicates = new ArrayList<>());
+				}
+
+				siblingPredicates.add(predicate);
+			}
+			else
+			{
+				workUnits.get(predicateRow[1]).getFlowController().setPredicate(predicate);
+			}
+
+			predicatesById.put(predicateId, predicate);
+		}
+
+		return predicatesById;
+	}
+
+	private void retrieveDeclaredVariables(String condition, Object parameter, final Map<Long, WorkUnit> workUnits)
+	{
+		String sql = "select d.workunit_id, d.name, d.value from " + declaredVariableTable + " d join " + workunitTable + " w on d.workunit_id = w.id where " + condition + " order by d.workunit_id, d.variable_ordinal";
+
+		definitionJdbcTemplate.query(sql, new Object[] {parameter}, new RowCallbackHandler() {
+				public void processRow(ResultSet resultSet) throws SQLException {
+					workUnits.get(resultSet.getLong("workunit_id")).getDeclaredVariables().put(resultSet.getString("name"), resultSet.getString("value"));
+				}
+			});
+	}
+
+	private void retrieveParameters(String condition, Object parameter, final Map<Long, WorkUnit> workUnits, final Map<Long, Predicate> predicatesById)
+	{
+		String sql = "select p.workunit_id, p.variable_name from " + parameterTable + " p join " + workunitTable + " w on p.workunit_id = w.id where " + condition + " order by p.workunit_id, p.parameter_ordinal";
+
+		definitionJdbcTemplate.query(sql, new Object[] {parameter}, new RowCallbackHandler() {
+				public void processRow(ResultSet resultSet) throws SQLException {
+					workUnits.get(resultSet.getLong("workunit_id")).getCommand().getParameters().add(resultSet.getString("variable_name"));
+				}
+			});
+
+		if (!predicatesById.isEmpty())
+		{
+			sql = "select p.predicate_id, p.variable_name from " + parameterTable + " p join " + predicateTable + " r on p.predicate_id = r.id join " + workunitTable + " w on r.workunit_id = w.id where " + condition + " order by p.predicate_id, p.parameter_ordinal";
+
+			definitionJdbcTemplate.query(sql, new Object[] {parameter}, new RowCallbackHandler() {
+					public void processRow(ResultSet resultSet) throws SQLException {
+						predicatesById.get(resultSet.getLong("predicate_id")).getParameters().add(resultSet.getString("variable_name"));
+					}
+				});
+		}
+	}
+
+	private void retrieveReturnedVariables(String condition, Object parameter, final Map<Long, WorkUnit> workUnits)
+	{
+		String sql = "select r.workunit_id, r.variable_name from " + returnedVariableTable + " r join " + workunitTable + " w on r.workunit_id = w.id where " + condition + " order by r.workunit_id, r.variable_ordinal";
+
+		definitionJdbcTemplate.query(sql, new Object[] {parameter}, new RowCallbackHandler() {
+				public void processRow(ResultSet resultSet) throws SQLException {
+					workUnits.get(resultSet.getLong("workunit_id")).getReturnedVariables().add(resultSet.getString("variable_name"));
+				}
+			});
 	}
 
 	public Workflow retrieveConfigurationWorkflow(long workflowId)
 	{
 		return retrieveConfigurationWorkflow(workflowId, null);
 	}
+
+	public long retrieveWorkflowId(String workflowName)
+	{
+		List<Long> workflowIds = jdbcTemplate.queryForList("select id from " + workflowTable + " where name = ?", Long.class, workflowName);
+
+		return (workflowIds.isEmpty() ? 0 : workflowIds.get(0));
+	}
 
-	private Workflow buildTree(List<Pair<WorkUnit, List<Long>>> workunitsAndTheirAncestorsList, WorkflowContext workflowContext) {
+	public List<Long> retrieveWorkflowIds()
+	{
+		return jdbcTemplate.queryForList("select id from " + workflowTable + " order by id", Long.class);
+	}
+
+	private Workflow buildTree(Map<Long, WorkUnit> workUnits, Map<Long, Long> parentIds, Map<Long, Integer> ordinals, WorkflowContext workflowContext) {
 		Workflow workflow = new Workflow(workflowContext);
 
-		Collections.sort(workunitsAndTheirAncestorsList, new Comparator<Pair<WorkUnit, List<Long>>>() {
-				@Override
-				public int compare(Pair<WorkUnit, List<Long>> o1, Pair<WorkUnit, List<Long>> o2) {
-					return (new Integer(o1.getRight().size()).compareTo(new Integer(o2.getRight().size())) !=0 ? new Integer(o1.getRight().size()).compareTo(new Integer(o2.getRight().size())) : new Long(o1.getLeft().getId()).compareTo(new Long(o2.getLeft().getId())));
+		WorkUnit rootWorkUnit = null;
+
+		Map<Long, List<WorkUnit>> childWorkUnits = new HashMap<>();
+
+		for (WorkUnit workUnit : workUnits.values())
+		{
+			Long parentId = parentIds.get(workUnit.getId());
+
+			if (parentId == null)
+			{
+				rootWorkUnit = workUnit;
+			}
+			else
+			{
+				List<WorkUnit> siblingWorkUnits = childWorkUnits.get(parentId);
+
+				if (siblingWorkUnits == null)
+				{
+					childWorkUnits.put(parentId, siblingWorkUnits = new ArrayList<>());
 				}
-			});
 
-		workflow.setAsRootWorkUnit(workunitsAndTheirAncestorsList.get(0).getLeft());
+				siblingWorkUnits.add(workUnit);
+			}
+		}
 
-		for (int i=1; i<workunitsAndTheirAncestorsList.size(); i++)
+		workflow.setAsRootWorkUnit(rootWorkUnit);
+
+		Deque<WorkUnit> pendingWorkUnits = new ArrayDeque<>();
+		pendingWorkUnits.add(rootWorkUnit);
+
+		while (!pendingWorkUnits.isEmpty())
 		{
-			for (int j=i-1; j>=0 ; j--)
+			WorkUnit parentWorkUnit = pendingWorkUnits.poll();
+
+			List<WorkUnit> siblingWorkUnits = childWorkUnits.get(parentWorkUnit.getId());
+
+			if (siblingWorkUnits != null)
 			{
-				if (workunitsAndTheirAncestorsList.get(i).getRight().size() == workunitsAndTheirAncestorsList.get(j).getRight().size()+1 && workunitsAndTheirAncestorsList.get(i).getRight().containsAll(workunitsAndTheirAncestorsList.get(j).getRight()))
+				for (WorkUnit childWorkUnit : orderSiblings(siblingWorkUnits, ordinals))
 				{
-					workunitsAndTheirAncestorsList.get(j).getLeft().addChildWorkUnit(workunitsAndTheirAncestorsList.get(i).getLeft());
-					break;
+					parentWorkUnit.addChildWorkUnit(childWorkUnit);
+
+					pendingWorkUnits.add(childWorkUnit);
 				}
 			}
 		}
+
 		return workflow;
 	}
+
+	private WorkUnit[] orderSiblings(List<WorkUnit> siblingWorkUnits, Map<Long, Integer> ordinals)
+	{
+		WorkUnit[] orderedWorkUnits = new WorkUnit[siblingWorkUnits.size()];
+
+		for (WorkUnit workUnit : siblingWorkUnits)
+		{
+			int ordinal = ordinals.get(workUnit.getId());
+
+			if (ordinal < 0 || ordinal >= orderedWorkUnits.length || orderedWorkUnits[ordinal] != null)
+			{
+				orderedWorkUnits = siblingWorkUnits.toArray(new WorkUnit[siblingWorkUnits.size()]);
+
+				Arrays.sort(orderedWorkUnits, new Comparator<WorkUnit>() {
+						@Override
+						public int compare(WorkUnit o1, WorkUnit o2) {
+							return Long.compare(o1.getId(), o2.getId());
+						}
+					});
+
+				break;
+			}
+
+			orderedWorkUnits[ordinal] = workUnit;
+		}
+
+		return orderedWorkUnits;
+	}
 
 	private void addWorkflow(Workflow workflow)
 	{
-		workflow.setName(Workflow.getDefaultName());
+		if (workflow.getName() == null) workflow.setName(Workflow.getDefaultName());
 
-		KeyHolder keyHolder9 = new GeneratedKeyHolder();
-		StringBuilder sql0 = new StringBuilder("insert into " + workflowTable + " (name) values (:value1)");
+		workflow.setVersion(1);
+
+		workflow.setId(idBlockAllocator.nextId(IdBlockAllocator.workflowSequence));
 
-		Map<String, Object> parameters0 = new HashMap<String, Object>();
-		parameters0.put("value1", workflow.getName());
-
-		namedParameterJdbcTemplate.update(sql0.toString(), new MapSqlParameterSource(parameters0), keyHolder9);
-
-		long containerId = keyHolder9.getKey().longValue();
-
-		workflow.setId(containerId);
+		jdbcTemplate.update("insert into " + workflowTable + " (id, name, version) values (?, ?, ?)", workflow.getId(), workflow.getName(), workflow.getVersion());
 	}
 
-	private List<Map<String,Object>> addWorkUnits(Workflow workflow)
+	private List<WorkUnit> collectStructure(Workflow workflow, Map<WorkUnit, WorkUnit> parents, Map<WorkUnit, Integer> ordinals)
 	{
-		List<WorkUnit> workUnits = new ArrayList<WorkUnit>(workflow.getRootWorkUnit().getTargetContainer().getDescendants());
-
-		KeyHolder keyHolder = new GeneratedKeyHolder();
-
-		StringBuilder sql = new StringBuilder("insert into " + workunitTable + " (workflow_id, discriminator, type, \"return\", persist_after_return, assign_to) values ");
-		Map<String, Object> parameters = new HashMap<String, Object>();
+		List<WorkUnit> workUnits = new ArrayList<>();
+
+		Deque<WorkUnit> pendingWorkUnits = new ArrayDeque<>();
+		pendingWorkUnits.push(workflow.getRootWorkUnit());
+
+		ordinals.put(workflow.getRootWorkUnit(), 0);
+
+		while (!pendingWorkUnits.isEmpty())
+		{
+			WorkUnit workUnit = pendingWorkUnits.pop();
+
+			workUnits.add(workUnit);
+
+			List<WorkUnit> childWorkUnits = workUnit.getChildWorkUnits();
+
+			for (int ordinal=childWorkUnits.size()-1; ordinal>=0; ordinal--)
+			{
+				parents.put(childWorkUnits.get(ordinal), workUnit);
+				ordinals.put(childWorkUnits.get(ordinal), ordinal);
+
+				pendingWorkUnits.push(childWorkUnits.get(ordinal));
+			}
+		}
+
+		return workUnits;
+	}
+
+	private void addWorkUnits(Workflow workflow, Collection<WorkUnit> workUnits, Map<WorkUnit, Integer> ordinals)
+	{
+		long workUnitId = idBlockAllocator.nextIds(IdBlockAllocator.workunitSequence, workUnits.size());
 
+		List<Object[]> batchArgs = new ArrayList<>(workUnits.size());
+
+		for (WorkUnit workUnit : workUnits)
+		{
+			workUnit.setId(workUnitId);
+			workUnit.getTargetContainer().setId(workUnitId);
+
+			batchArgs.add(workUnitValues(workflow, workUnit, ordinals.get(workUnit)));
+
+			workUnitId++;
+		}
+
+		batchUpdate("insert into " + workunitTable + " (id, workflow_id, ordinal, discriminator, type, \"return\", persist_after_return, assign_to) values (?, ?, ?, ?, ?, ?, ?, ?)", batchArgs);
+	}
+
+	private void updateWorkUnits(Workflow workflow, Collection<WorkUnit> workUnits, Map<WorkUnit, Integer> ordinals)
+	{
+		List<Object[]> batchArgs = new ArrayList<>(workUnits.size());
+
+		for (WorkUnit workUnit : workUnits)
+		{
+			Object[] values = workUnitValues(workflow, workUnit, ordinals.get(workUnit));
+
+			batchArgs.add(new Object[] {values[2], values[3], values[4], values[5], values[6], values[7], values[0]});
+		}
+
+		batchUpdate("update " + workunitTable + " set ordinal = ?, discriminator = ?, type = ?, \"return\" = ?, persist_after_return = ?, assign_to = ? where id = ?", batchArgs);
+	}
+
+	private Object[] workUnitValues(Workflow workflow, WorkUnit workUnit, Integer ordinal)
+	{
+		if (workUnit.isFlowController())
 		{
-			{
-				int i=0;
-				for (WorkUnit workUnit : workUnits) {
-					sql.append("(:workflow_id").append(i).append(", :discriminator").append(i).append(", :type").append(i).append(", :return").append(i).append(", :persist_after_return").append(i).append(", :assign_to").append(i).append("), ");
-					parameters.put("workflow_id" + i, workflow.getId());
-					if (workUnit.isFlowController())
-					{
-						parameters.put("discriminator" + i, flowControllerDiscriminator);
-						parameters.put("type" + i, workUnit.getFlowController().getTypeId());
-						parameters.put("return" + i, workUnit.isReturnAtCompletion());
-						parameters.put("persist_after_return" + i, workUnit.isPersistAfterReturn());
-						parameters.put("assign_to" + i, null);
-					}
-					else if (workUnit.isCommand())
-					{
-						parameters.put("discriminator" + i, commandDiscriminator);
-						parameters.put("type" + i, workUnit.getCommand().getTypeId());
-						parameters.put("return" + i, null);
-						parameters.put("persist_after_return" + i, null);
-						parameters.put("assign_to" + i, workUnit.getCommand().getAssignTo());
-					}
-					else
-					{
-						parameters.put("discriminator" + i, containerBlockDiscriminator);
-
-						parameters.put("type" + i, 0);
-						parameters.put("return" + i, workUnit.isReturnAtCompletion());
-						parameters.put("persist_after_return" + i, workUnit.isPersistAfterReturn());
-						parameters.put("assign_to" + i, null);
-					}
-					i++;
-				}
-			}			
-			sql.setLength(sql.length()-2);
-
-			namedParameterJdbcTemplate.update(sql.toString(), new MapSqlParameterSource(parameters), keyHolder);
+			return new Object[] {workUnit.getId(), workflow.getId(), ordinal, flowControllerDiscriminator, workUnit.getFlowController().getTypeId(), workUnit.isReturnAtCompletion(), workUnit.isPersistAfterReturn(), null};
 		}
+		else if (workUnit.isCommand())
+		{
+			return new Object[] {workUnit.getId(), workflow.getId(), ordinal, commandDiscriminator, workUnit.getCommand().getTypeId(), null, null, workUnit.getCommand().getAssignTo()};
+		}
+		else
+		{
+			return new Object[] {workUnit.getId(), workflow.getId(), ordinal, containerBlockDiscriminator, 0, workUnit.isReturnAtCompletion(), workUnit.isPersistAfterReturn(), null};
+		}
+	}
 
-		List<Map<String,Object>> insertedWorkUnits = keyHolder.getKeyList();
-
-		Iterator<WorkUnit> it1 = workUnits.iterator();
-		Iterator<Map<String, Object>> it2 = insertedWorkUnits.iterator();
-		while(it1.hasNext() && it2.hasNext())
-		{
-			WorkUnit workUnit = it1.next();
-			Map<String, Object> insertedWorkUnit = it2.next();
+	private void batchUpdate(String sql, List<Object[]> batchArgs)
+	{
+		int batchSize = Math.max(1, globalWorkflowSettings.getSaveBatchSize());
 
-			long generatedKey = (long) insertedWorkUnit.entrySet().iterator().next().getValue();
-			workUnit.setId(generatedKey);
-			workUnit.getTargetContainer().setId(generatedKey);
+		for (int i=0; i<batchArgs.size(); i=i+batchSize)
+		{
+			jdbcTemplate.batchUpdate(sql, batchArgs.subList(i, Math.min(i + batchSize, batchArgs.size())));
 		}
-
-		return insertedWorkUnits;
 	}
 
 	private void addTreePaths(Workflow workflow)
 	{
 		Collection<Triple<WorkUnit, WorkUnit, Long>> paths = workflow.getRootWorkUnit().getTargetContainer().getPaths();
 
-		StringBuilder sql3 = new StringBuilder("INSERT INTO " + treePathTable + " (ancestor, descendant, length) VALUES ");
-		List<Object> values3 = new ArrayList<Object>();
+		List<Object[]> batchArgs = new ArrayList<>(paths.size());
 
+		for (Triple<WorkUnit, WorkUnit, Long> path : paths)
 		{
-			int i=0;
-			for (Triple<WorkUnit, WorkUnit, Long> path : paths) {
-				sql3.append("(:value" + i + ", :value" + (i+1) + ", :value" + (i+2) + "), ");
-				values3.add(path.getLeft().getTargetContainer().getId());
-				values3.add(path.getMiddle().getTargetContainer().getId());
-				values3.add(path.getRight());
-
-				i=i+3;
-			}
-		}
-		sql3.setLength(sql3.length()-2);
-
-		Map<String, Object> parameters3 = new HashMap<String, Object>();
-		for (int i=0; i<values3.size(); i=i+3) {
-			parameters3.put("value" + i, values3.get(i));
-			parameters3.put("value" + (i+1), values3.get(i+1));
-			parameters3.put("value" + (i+2), values3.get(i+2));
+			batchArgs.add(new Object[] {path.getLeft().getTargetContainer().getId(), path.getMiddle().getTargetContainer().getId(), path.getRight()});
 		}
 
-		namedParameterJdbcTemplate.update(sql3.toString(), parameters3);
+		batchUpdate("insert into " + treePathTable + " (ancestor, descendant, length) values (?, ?, ?)", batchArgs);
 	}
 
-	private List<Map<String,Object>> addPredicates(Workflow workflow, List<Map<String,Object>> insertedWorkUnits)
+	private void addTreePaths(Collection<WorkUnit> workUnits, Map<WorkUnit, WorkUnit> parents)
 	{
-		List<WorkUnit> workUnits7 = new ArrayList<>(workflow.getRootWorkUnit().getTargetContainer().getDescendants());
+		List<Object[]> batchArgs = new ArrayList<>();
 
-		KeyHolder keyHolder9 = new GeneratedKeyHolder();
-
-		StringBuilder sql9 = new StringBuilder("insert into " + predicateTable + " (id, workunit_id, parent_predicate_id, type, relation_type) values ");
-		Map<String, Object> parameters9 = new HashMap<>();
-
-		{
-			int j=0;
-			for (WorkUnit workUnit: workUnits7)
-			{
-				if (workUnit.getFlowController() != null)
+		for (WorkUnit workUnit : workUnits)
+		{
+			long length = 0;
+
+			for (WorkUnit ancestor = workUnit; ancestor != null; ancestor = parents.get(ancestor))
+			{
+				batchArgs.add(new Object[] {ancestor.getId(), workUnit.getId(), length++});
+			}
+		}
+
+		batchUpdate("insert into " + treePathTable + " (ancestor, descendant, length) values (?, ?, ?)", batchArgs);
+	}
+
+	private void addPredicates(Collection<WorkUnit> workUnits)
+	{
+		List<Object[]> batchArgs = new ArrayList<>();
+
+		for (WorkUnit workUnit: workUnits)
+		{
+			if (workUnit.getFlowController() != null)
+			{
+				Collection<Predicate> descendantPredicates = workUnit.getFlowController().getPredicate().getDescendants();
+
+				long predicateId = idBlockAllocator.nextIds(IdBlockAllocator.predicateSequence, descendantPredicates.size());
+
+				for (Predicate predicate: descendantPredicates) predicate.setId(predicateId++);
+
+				Predicate rootPredicate = workUnit.getFlowController().getPredicate();
+
+				batchArgs.add(new Object[] {rootPredicate.getId(), workUnit.getId(), null, rootPredicate.getTypeId(), (rootPredicate.hasChildren() ? predicateTypeService.getTypeId(rootPredicate.getClass()) : null)});
+
+				for (Predicate predicate: descendantPredicates)
 				{
-					StoredProcedure procedure = new GenericStoredProcedure();
-					DataSource dataSource = (DataSource) serviceLocator.getInstance("dataSource");
-
-					procedure.setDataSource(dataSource);
-					procedure.setSql("NEXTVALS");
-					procedure.setFunction(false); 
-
-					SqlParameter[] parameters = {
-							new SqlOutParameter("current_value", Types.BIGINT),
-
-							new SqlParameter(Types.INTEGER)
-					};
-
-					procedure.setParameters(parameters);
-					procedure.compile();
-
-					int predicateNumber = workUnit.getFlowController().getPredicate().getDescendants().size();
-					Map<String, Object> result = procedure.execute( predicateNumber);
-
-					long predicateFirstId = (long) result.get("current_value");
-
-					for (Predicate predicate: workUnit.getFlowController().getPredicate().getDescendants()) predicate.setId(predicateFirstId++);
-
-					sql9.append("(:value").append((j+1)*5-4).append(", :value").append((j+1)*5-3).append(", :value").append((j+1)*5-2).append(", :value").append((j+1)*5-1).append(", :value").append((j+1)*5).append("), ");
-					parameters9.put("value" + ((j+1)*5-4), workUnit.getFlowController().getPredicate().getId());
-					parameters9.put("value" + ((j+1)*5-3), workUnit.getId());
-					parameters9.put("value" + ((j+1)*5-2), null);
-					parameters9.put("value" + ((j+1)*5-1), workUnit.getFlowController().getPredicate().getTypeId());
-
-					parameters9.put("value" + ((j+1)*5), (workUnit.getFlowController().getPredicate().hasChildren() ? predicateTypeService.getTypeId(workUnit.getFlowController().getPredicate().getClass()) : null));
-
-					j++;
-
-					for (Predicate predicate: workUnit.getFlowController().getPredicate().getDescendants())
+					for (Predicate childPredicate : predicate.getChildren())
 					{
-						for (Predicate childPredicate : predicate.getChildren())
-						{
-							sql9.append("(:value").append((j+1)*5-4).append(", :value").append((j+1)*5-3).append(", :value").append((j+1)*5-2).append(", :value").append((j+1)*5-1).append(", :value").append((j+1)*5).append("), ");
-							parameters9.put("value" + ((j+1)*5-4), childPredicate.getId());
-							parameters9.put("value" + ((j+1)*5-3), workUnit.getId());
-							parameters9.put("value" + ((j+1)*5-2), predicate.getId());
-							parameters9.put("value" + ((j+1)*5-1), childPredicate.getTypeId());
-
-							parameters9.put("value" + ((j+1)*5), (childPredicate.hasChildren() ? predicateTypeService.getTypeId(childPredicate.getClass()) : null));
-
-							j++;
-						}
+						batchArgs.add(new Object[] {childPredicate.getId(), workUnit.getId(), predicate.getId(), childPredicate.getTypeId(), (childPredicate.hasChildren() ? predicateTypeService.getTypeId(childPredicate.getClass()) : null)});
 					}
 				}
 			}
-
-			sql9.setLength(sql9.length()-2);
-
-			if (j>0)
-			{
-				namedParameterJdbcTemplate.update(sql9.toString(), new MapSqlParameterSource(parameters9), keyHolder9);
-			}
 		}
 
-		List<Map<String,Object>> insertedPredicates = keyHolder9.getKeyList();
-
-		return insertedPredicates;
+		batchUpdate("insert into " + predicateTable + " (id, workunit_id, parent_predicate_id, type, relation_type) values (?, ?, ?, ?, ?)", batchArgs);
 	}
 
 	public void addDeclaredVariables(Workflow workflow)
 	{
-		List<WorkUnit> workUnits = new ArrayList<WorkUnit>(workflow.getRootWorkUnit().getTargetContainer().getDescendants());
+		addDeclaredVariables(workflow.getRootWorkUnit().getTargetContainer().getDescendants());
+	}
 
-		StringBuilder sql = new StringBuilder("insert into " + declaredVariableTable + " (workunit_id, variable_ordinal, name, value) values ");
-		Map<String, Object> parameters = new HashMap<String, Object>();
+	private void addDeclaredVariables(Collection<WorkUnit> workUnits)
+	{
+		List<Object[]> batchArgs = new ArrayList<>();
 
-		int i=0;
 		for (WorkUnit workUnit : workUnits)
 		{
 			int j=0;
-			for (Map.Entry<String, Object> variable : workUnit.getVariables().entrySet())
+			for (Pair<String, String> variable : declaredVariableValues(workUnit))
 			{
-				sql.append("(:workunit_id").append(i).append(", :variable_ordinal").append(i).append(", :name").append(i).append(", :value").append(i).append("), ");
-
-				parameters.put("workunit_id" + i, workUnit.getId());
-				parameters.put("variable_ordinal" + i, j++);
-				parameters.put("name" + i, variable.getKey());
-
-				parameters.put("value" + i, (variable.getValue() != null? variable.getValue().toString(): null));
-
-				i++;
+				batchArgs.add(new Object[] {workUnit.getId(), j++, variable.getKey(), variable.getValue()});
 			}
 		}
-		sql.setLength(sql.length()-2);
 
-		if (i>0)
-		{
-			namedParameterJdbcTemplate.update(sql.toString(), new MapSqlParameterSource(parameters));
-		}
+		batchUpdate("insert into " + declaredVariableTable + " (workunit_id, variable_ordinal, name, value) values (?, ?, ?, ?)", batchArgs);
 	}
 
+	private List<Pair<String, String>> declaredVariableValues(WorkUnit workUnit)
+	{
+		List<Pair<String, String>> variables = new ArrayList<>(workUnit.getDeclaredVariables().size());
+
+		for (Map.Entry<String, Object> variable : workUnit.getDeclaredVariables().entrySet())
+		{
+			variables.add(new ImmutablePair<String, String>(variable.getKey(), (variable.getValue() != null? variable.getValue().toString(): null)));
+		}
+
+		return variables;
+	}
+
 	public void addParameters(Workflow workflow)
 	{
-		List<WorkUnit> workUnits = new ArrayList<WorkUnit>(workflow.getRootWorkUnit().getTargetContainer().getDescendants());
+		addParameters(workflow.getRootWorkUnit().getTargetContainer().getDescendants());
+	}
 
-		StringBuilder sql = new StringBuilder("insert into " + parameterTable + " (workunit_id, predicate_id, parameter_ordinal, variable_name) values ");
-		Map<String, Object> parameters = new HashMap<String, Object>();
+	private void addParameters(Collection<WorkUnit> workUnits)
+	{
+		List<Object[]> batchArgs = new ArrayList<>();
 
-		int i=0;
 		for (WorkUnit workUnit : workUnits)
 		{
 			if (workUnit.isCommand() && !CollectionUtils.isEmpty(workUnit.getCommand().getParameters()))
@@ -563,14 +696,7 @@ public class WorkflowConfigurationDao {
 				int j=0;
 				for (String parameter : workUnit.getCommand().getParameters())
 				{
-					sql.append("(:value").append(i).append(", :value").append(i+1).append(", :value").append(i+2).append(", :value").append(i+3).append("), ");
-
-					parameters.put("value" + i, workUnit.getId());
-					parameters.put("value" + (i+1), null);
-					parameters.put("value" + (i+2), j++);
-					parameters.put("value" + (i+3), parameter);
-
-					i=i+4;
+					batchArgs.add(new Object[] {workUnit.getId(), null, j++, parameter});
 				}
 			}
 
@@ -583,35 +709,25 @@ public class WorkflowConfigurationDao {
 						int j=0;
 						for (String parameter : predicate.getParameters())
 						{
-							sql.append("(:value").append(i).append(", :value").append(i+1).append(", :value").append(i+2).append(", :value").append(i+3).append("), ");
-
-							parameters.put("value" + i, null);
-							parameters.put("value" + (i+1), predicate.getId());
-							parameters.put("value" + (i+2), j++);
-							parameters.put("value" + (i+3), parameter);
-
-							i=i+4;
+							batchArgs.add(new Object[] {null, predicate.getId(), j++, parameter});
 						}
 					}
 				}
 			}
-		}		
-		sql.setLength(sql.length()-2);
+		}
 
-		if (i>0)
-		{
-			namedParameterJdbcTemplate.update(sql.toString(), new MapSqlParameterSource(parameters));
-		}
+		batchUpdate("insert into " + parameterTable + " (workunit_id, predicate_id, parameter_ordinal, variable_name) values (?, ?, ?, ?)", batchArgs);
 	}
 
 	public void addReturnedVariables(Workflow workflow)
 	{
-		List<WorkUnit> workUnits = new ArrayList<WorkUnit>(workflow.getRootWorkUnit().getTargetContainer().getDescendants());
+		addReturnedVariables(workflow.getRootWorkUnit().getTargetContainer().getDescendants());
+	}
 
-		StringBuilder sql = new StringBuilder("insert into " + returnedVariableTable + " (workunit_id, variable_ordinal, variable_name) values ");
-		Map<String, Object> parameters = new HashMap<String, Object>();
+	private void addReturnedVariables(Collection<WorkUnit> workUnits)
+	{
+		List<Object[]> batchArgs = new ArrayList<>();
 
-		int i=0;
 		for (WorkUnit workUnit : workUnits)
 		{
 			if (!workUnit.isCommand() && !CollectionUtils.isEmpty(workUnit.getReturnedVariables()))
@@ -619,40 +735,301 @@ public class WorkflowConfigurationDao {
 				int j=0;
 				for (String variable : workUnit.getReturnedVariables())
 				{
-					sql.append("(:workunit_id").append(i).append(", :variable_ordinal").append(i).append(", :variable_name").append(i).append("), ");
-
-					parameters.put("workunit_id" + i, workUnit.getId());
-					parameters.put("variable_ordinal" + i, j++);
-					parameters.put("variable_name" + i, variable);
-
-					i++;
+					batchArgs.add(new Object[] {workUnit.getId(), j++, variable});
 				}
 			}
-		}		
-		sql.setLength(sql.length()-2);
+		}
 
-		if (i>0)
-		{
-			namedParameterJdbcTemplate.update(sql.toString(), new MapSqlParameterSource(parameters));
-		}
+		batchUpdate("insert into " + returnedVariableTable + " (workunit_id, variable_ordinal, variable_name) values (?, ?, ?)", batchArgs);
 	}
 
-	@Transactional
-	public long saveWorkflow(Workflow workflow) {
+	private void deleteByWorkUnit(String table, Collection<WorkUnit> workUnits)
+	{
+		List<Object[]> batchArgs = new ArrayList<>(workUnits.size());
+
+		for (WorkUnit workUnit : workUnits) batchArgs.add(new Object[] {workUnit.getId()});
+
+		batchUpdate("delete from " + table + " where workunit_id = ?", batchArgs);
+	}
+
+	private void deletePredicates(Collection<WorkUnit> workUnits)
+	{
+		List<Object[]> batchArgs = new ArrayList<>();
+
+		for (WorkUnit workUnit : workUnits)
+		{
+			if (workUnit.isFlowController())
+			{
+				List<Predicate> descendantPredicates = workUnit.getFlowController().getPredicate().getDescendants();
+
+				for (int i=descendantPredicates.size()-1; i>=0; i--) batchArgs.add(new Object[] {descendantPredicates.get(i).getId()});
+			}
+		}
+
+		batchUpdate("delete from " + parameterTable + " where predicate_id = ?", batchArgs);
+		batchUpdate("delete from " + predicateTable + " where id = ?", batchArgs);
+	}
+
+	private void deleteTreePaths(Collection<WorkUnit> workUnits, boolean asAncestor)
+	{
+		List<Object[]> batchArgs = new ArrayList<>(workUnits.size());
+
+		for (WorkUnit workUnit : workUnits) batchArgs.add(asAncestor ? new Object[] {workUnit.getId(), workUnit.getId()} : new Object[] {workUnit.getId()});
+
+		batchUpdate("delete from " + treePathTable + " where descendant = ?" + (asAncestor ? " or ancestor = ?" : ""), batchArgs);
+	}
+
+	private void deleteWorkUnits(Collection<WorkUnit> workUnits)
+	{
+		deletePredicates(workUnits);
+
+		deleteByWorkUnit(parameterTable, workUnits);
+		deleteByWorkUnit(declaredVariableTable, workUnits);
+		deleteByWorkUnit(returnedVariableTable, workUnits);
+		deleteByWorkUnit(assignedVariableTable, workUnits);
+
+		deleteTreePaths(workUnits, true);
+
+		List<Object[]> batchArgs = new ArrayList<>(workUnits.size());
+
+		for (WorkUnit workUnit : workUnits) batchArgs.add(new Object[] {workUnit.getId()});
+
+		batchUpdate("delete from " + workunitTable + " where id = ?", batchArgs);
+	}
+
+	private boolean samePredicate(Predicate predicate, Predicate storedPredicate)
+	{
+		if (predicate.getClass() != storedPredicate.getClass() || !predicate.getParameters().equals(storedPredicate.getParameters()) || predicate.getChildren().size() != storedPredicate.getChildren().size()) return false;
+
+		Iterator<Predicate> storedChildPredicates = storedPredicate.getChildren().iterator();
+
+		for (Predicate childPredicate : predicate.getChildren())
+		{
+			if (!samePredicate(childPredicate, storedChildPredicates.next())) return false;
+		}
+
+		return true;
+	}
+
+	private List<String> commandParameters(WorkUnit workUnit)
+	{
+		return (workUnit.isCommand() ? workUnit.getCommand().getParameters() : Collections.<String>emptyList());
+	}
+
+	private List<String> returnedVariables(WorkUnit workUnit)
+	{
+		return (workUnit.isCommand() ? Collections.<String>emptyList() : workUnit.getReturnedVariables());
+	}
+
+	private void insertWorkflow(Workflow workflow)
+	{
 		addWorkflow(workflow);
-
-		List<Map<String,Object>> insertedWorkUnits = addWorkUnits(workflow);
-
+
+		Map<WorkUnit, Integer> ordinals = new HashMap<>();
+
+		List<WorkUnit> workUnits = collectStructure(workflow, new HashMap<WorkUnit, WorkUnit>(), ordinals);
+
+		addWorkUnits(workflow, workUnits, ordinals);
+
 		addTreePaths(workflow);
-
-		List<Map<String,Object>> insertedPredicates = addPredicates(workflow, insertedWorkUnits);
-
-		addDeclaredVariables(workflow);
-
-		addParameters(workflow);
-
-		addReturnedVariables(workflow);
-
+
+		addPredicates(workUnits);
+
+		addDeclaredVariables(workUnits);
+
+		addParameters(workUnits);
+
+		addReturnedVariables(workUnits);
+
+		jdbcTemplate.update("update " + workflowTable + " set snapshot = ? where id = ?", workflowSnapshotCodec.encode(workflow), workflow.getId());
+	}
+
+	private void updateWorkflow(Workflow workflow)
+	{
+		int storedVersion = jdbcTemplate.queryForObject("select version from " + workflowTable + " where id = ?", Integer.class, workflow.getId());
+
+		if (storedVersion != workflow.getVersion())
+		{
+			throw new WorkflowException("Workflow id: " + workflow.getId() + " was modified concurrently (stored version: " + storedVersion + ", edited version: " + workflow.getVersion() + ")");
+		}
+
+		claimWorkflowVersion(workflow);
+
+		Workflow storedWorkflow = retrieveRelationalWorkflow(workflow.getId(), null);
+
+		Map<WorkUnit, WorkUnit> parents = new HashMap<>();
+		Map<WorkUnit, Integer> ordinals = new HashMap<>();
+
+		List<WorkUnit> workUnits = collectStructure(workflow, parents, ordinals);
+
+		Map<WorkUnit, WorkUnit> storedParents = new HashMap<>();
+		Map<WorkUnit, Integer> storedOrdinals = new HashMap<>();
+
+		collectStructure(storedWorkflow, storedParents, storedOrdinals);
+
+		Map<Long, WorkUnit> storedWorkUnits = new HashMap<>();
+
+		for (WorkUnit storedWorkUnit : storedOrdinals.keySet()) storedWorkUnits.put(storedWorkUnit.getId(), storedWorkUnit);
+
+		List<WorkUnit> addedWorkUnits = new ArrayList<>();
+		List<WorkUnit> updatedWorkUnits = new ArrayList<>();
+		Set<WorkUnit> pathWorkUnits = new LinkedHashSet<>();
+		List<WorkUnit> predicateWorkUnits = new ArrayList<>();
+		List<WorkUnit> storedPredicateWorkUnits = new ArrayList<>();
+		List<WorkUnit> declaredVariableWorkUnits = new ArrayList<>();
+		List<WorkUnit> parameterWorkUnits = new ArrayList<>();
+		List<WorkUnit> returnedVariableWorkUnits = new ArrayList<>();
+
+		for (WorkUnit workUnit : workUnits)
+		{
+			WorkUnit storedWorkUnit = storedWorkUnits.remove(workUnit.getId());
+
+			if (storedWorkUnit == null)
+			{
+				addedWorkUnits.add(workUnit);
+				pathWorkUnits.add(workUnit);
+				predicateWorkUnits.add(workUnit);
+				declaredVariableWorkUnits.add(workUnit);
+				parameterWorkUnits.add(workUnit);
+				returnedVariableWorkUnits.add(workUnit);
+
+				continue;
+			}
+
+			if (!Arrays.equals(workUnitValues(workflow, workUnit, ordinals.get(workUnit)), workUnitValues(workflow, storedWorkUnit, storedOrdinals.get(storedWorkUnit))))
+			{
+				updatedWorkUnits.add(workUnit);
+			}
+
+			WorkUnit parent = parents.get(workUnit);
+			WorkUnit storedParent = storedParents.get(storedWorkUnit);
+
+			if ((parent == null) != (storedParent == null) || (parent != null && parent.getId() != storedParent.getId()))
+			{
+				pathWorkUnits.addAll(workUnit.getDescendants());
+			}
+
+			if (workUnit.isFlowController() && storedWorkUnit.isFlowController() && samePredicate(workUnit.getFlowController().getPredicate(), storedWorkUnit.getFlowController().getPredicate()))
+			{
+				Iterator<Predicate> storedPredicates = storedWorkUnit.getFlowController().getPredicate().getDescendants().iterator();
+
+				for (Predicate predicate : workUnit.getFlowController().getPredicate().getDescendants()) predicate.setId(storedPredicates.next().getId());
+			}
+			else if (workUnit.isFlowController() || storedWorkUnit.isFlowController())
+			{
+				predicateWorkUnits.add(workUnit);
+				storedPredicateWorkUnits.add(storedWorkUnit);
+				parameterWorkUnits.add(workUnit);
+			}
+
+			if (!declaredVariableValues(workUnit).equals(declaredVariableValues(storedWorkUnit)))
+			{
+				declaredVariableWorkUnits.add(workUnit);
+			}
+
+			if (!commandParameters(workUnit).equals(commandParameters(storedWorkUnit)))
+			{
+				parameterWorkUnits.add(workUnit);
+			}
+
+			if (!returnedVariables(workUnit).equals(returnedVariables(storedWorkUnit)))
+			{
+				returnedVariableWorkUnits.add(workUnit);
+			}
+		}
+
+		Collection<WorkUnit> removedWorkUnits = storedWorkUnits.values();
+
+		deleteWorkUnits(removedWorkUnits);
+
+		deletePredicates(storedPredicateWorkUnits);
+
+		List<WorkUnit> keptWorkUnits = new ArrayList<>(pathWorkUnits);
+		keptWorkUnits.removeAll(addedWorkUnits);
+
+		deleteTreePaths(keptWorkUnits, false);
+
+		deleteByWorkUnit(declaredVariableTable, declaredVariableWorkUnits);
+		deleteByWorkUnit(parameterTable, parameterWorkUnits);
+		deleteByWorkUnit(returnedVariableTable, returnedVariableWorkUnits);
+
+		addWorkUnits(workflow, addedWorkUnits, ordinals);
+
+		updateWorkUnits(workflow, updatedWorkUnits, ordinals);
+
+		addTreePaths(pathWorkUnits, parents);
+
+		addPredicates(predicateWorkUnits);
+
+		addDeclaredVariables(declaredVariableWorkUnits);
+
+		addParameters(parameterWorkUnits);
+
+		addReturnedVariables(returnedVariableWorkUnits);
+
+		workflow.setVersion(workflow.getVersion() + 1);
+
+		jdbcTemplate.update("update " + workflowTable + " set snapshot = ? where id = ?", workflowSnapshotCodec.encode(workflow), workflow.getId());
+
+		logger.debug("Saved workflow id: " + workflow.getId() + " as version " + workflow.getVersion() + " (" + addedWorkUnits.size() + " added, " + updatedWorkUnits.size() + " updated, " + removedWorkUnits.size() + " removed work unit(s))");
+	}
+
+	private void claimWorkflowVersion(Workflow workflow)
+	{
+		int claimed = jdbcTemplate.update("update " + workflowTable + " set version = ? where id = ? and version = ? and not exists (select c.id from " + conversationTable + " c where " + activeConversationCondition + ")", workflow.getVersion() + 1, workflow.getId(), workflow.getVersion(), workflow.getId());
+
+		if (claimed == 0)
+		{
+			int activeConversations = jdbcTemplate.queryForObject("select count(*) from " + conversationTable + " c where " + activeConversationCondition, Integer.class, workflow.getId());
+
+			if (activeConversations > 0)
+			{
+				throw new WorkflowException("Workflow id: " + workflow.getId() + " cannot be modified while " + activeConversations + " conversation(s) on it are still active");
+			}
+
+			throw new WorkflowException("Workflow id: " + workflow.getId() + " was modified concurrently (edited version: " + workflow.getVersion() + ")");
+		}
+	}
+
+	@Transactional
+	public long saveWorkflow(final Workflow workflow) {
+		transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					if (workflow.getId() > 0 && !jdbcTemplate.queryForList("select id from " + workflowTable + " where id = ?", Long.class, workflow.getId()).isEmpty())
+					{
+						updateWorkflow(workflow);
+					}
+					else
+					{
+						insertWorkflow(workflow);
+					}
+				}
+			});
+
+		workflowDefinitionCache.invalidate(workflow.getId());
+
+		if (globalWorkflowSettings.isDefinitionFileExportEnabled())
+		{
+			mappedFileWorkflowRepository.storeWorkflow(workflow);
+		}
+
 		return workflow.getId();
 	}
+
+	public int exportWorkflows()
+	{
+		int exported = 0;
+
+		for (long workflowId : retrieveWorkflowIds())
+		{
+			if (mappedFileWorkflowRepository.storeWorkflow(retrieveConfigurationWorkflow(workflowId)))
+			{
+				exported++;
+			}
+		}
+
+		logger.info("Exported " + exported + " workflow(s) to " + globalWorkflowSettings.getDefinitionFile());
+
+		return exported;
+	}
 }
\ No newline at end of file
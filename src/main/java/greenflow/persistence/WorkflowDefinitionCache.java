@@ -0,0 +1,123 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.persistence;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import greenflow.context.WorkflowContext;
+import greenflow.utilities.GlobalWorkflowSettingsUtilities;
+import greenflow.workflow.Workflow;
+
+@Service
+public class WorkflowDefinitionCache
+{
+	private static final Logger logger = LoggerFactory.getLogger(WorkflowDefinitionCache.class);
+
+	@Autowired
+	@Qualifier("workflowDefinitionRepository")
+	private WorkflowDefinitionRepository workflowDefinitionRepository;
+
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
+
+	private Cache<Pair<Long, Integer>, Workflow> definitions;
+
+	private Map<Long, Integer> currentVersions = new ConcurrentHashMap<Long, Integer>();
+
+	@PostConstruct
+	protected void init()
+	{
+		definitions = CacheBuilder.newBuilder().maximumSize(globalWorkflowSettings.getDefinitionCacheSize()).build();
+	}
+
+	public Workflow getWorkflow(long workflowId, WorkflowContext workflowContext)
+	{
+		return new Workflow(getDefinition(workflowId), workflowContext);
+	}
+
+	public Workflow getDefinition(long workflowId)
+	{
+		Integer version = currentVersions.get(workflowId);
+
+		Workflow definition = (version != null ? definitions.getIfPresent(new ImmutablePair<Long, Integer>(workflowId, version)) : null);
+
+		if (definition == null)
+		{
+			logger.debug("Definition cache miss, loading workflow id: " + workflowId);
+
+			definition = workflowDefinitionRepository.retrieveConfigurationWorkflow(workflowId);
+
+			definition.seal();
+
+			definitions.put(new ImmutablePair<Long, Integer>(workflowId, definition.getVersion()), definition);
+
+			currentVersions.put(workflowId, definition.getVersion());
+		}
+
+		return definition;
+	}
+
+	public void invalidate(final long workflowId)
+	{
+		evict(workflowId);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+		{
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					evict(workflowId);
+				}
+			});
+		}
+	}
+
+	private void evict(long workflowId)
+	{
+		currentVersions.remove(workflowId);
+
+		definitions.asMap().keySet().removeIf(key -> key.getLeft() == workflowId);
+	}
+
+	public void invalidateAll()
+	{
+		currentVersions.clear();
+
+		definitions.invalidateAll();
+	}
+
+	public long size()
+	{
+		return definitions.size();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.persistence;
+
+import java.util.List;
+
+import greenflow.context.WorkflowContext;
+import greenflow.workflow.Workflow;
+
+public interface WorkflowDefinitionRepository
+{
+	Workflow retrieveConfigurationWorkflow(long workflowId);
+
+	Workflow retrieveConfigurationWorkflow(long workflowId, WorkflowContext workflowContext);
+
+	long retrieveWorkflowId(String workflowName);
+
+	List<Long> retrieveWorkflowIds();
+}
\ No newline at end of file
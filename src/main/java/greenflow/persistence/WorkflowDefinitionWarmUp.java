@@ -0,0 +1,149 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import greenflow.utilities.GlobalWorkflowSettingsUtilities;
+
+@Service
+public class WorkflowDefinitionWarmUp implements ApplicationListener<ContextRefreshedEvent>
+{
+	private static final Logger logger = LoggerFactory.getLogger(WorkflowDefinitionWarmUp.class);
+
+	@Autowired
+	@Qualifier("workflowDefinitionRepository")
+	private WorkflowDefinitionRepository workflowDefinitionRepository;
+
+	@Autowired
+	private WorkflowDefinitionCache workflowDefinitionCache;
+
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
+
+	private volatile boolean warmedUp;
+
+	@Override
+	public void onApplicationEvent(ContextRefreshedEvent event)
+	{
+		if (globalWorkflowSettings.isDefinitionWarmUpEnabled() && !warmedUp)
+		{
+			warmedUp = true;
+
+			warmUp();
+		}
+	}
+
+	public int warmUp()
+	{
+		long start = System.nanoTime();
+
+		List<Long> workflowIds = retrieveWarmUpWorkflowIds();
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(globalWorkflowSettings.getDefinitionWarmUpThreads(), workflowIds.size())), new ThreadFactoryBuilder().setNameFormat("workflow-warm-up-%d").setDaemon(true).build());
+
+		List<Future<?>> loads = new ArrayList<>(workflowIds.size());
+
+		int loaded = 0;
+
+		try
+		{
+			for (final long workflowId : workflowIds)
+			{
+				loads.add(executor.submit(new Runnable() {
+						public void run() {
+							workflowDefinitionCache.getDefinition(workflowId).compile();
+						}
+					}));
+			}
+
+			for (int i=0; i<loads.size(); i++)
+			{
+				try
+				{
+					loads.get(i).get();
+
+					loaded++;
+				}
+				catch (ExecutionException e)
+				{
+					logger.warn("Unable to warm up workflow id: " + workflowIds.get(i), e.getCause());
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		logger.info("Warmed up " + loaded + " of " + workflowIds.size() + " workflow definition(s) in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		return loaded;
+	}
+
+	private List<Long> retrieveWarmUpWorkflowIds()
+	{
+		Set<Long> workflowIds = new LinkedHashSet<>();
+
+		if (StringUtils.isNotBlank(globalWorkflowSettings.getDefinitionWarmUpNames()))
+		{
+			for (String workflowName : StringUtils.split(globalWorkflowSettings.getDefinitionWarmUpNames(), ','))
+			{
+				long workflowId = workflowDefinitionRepository.retrieveWorkflowId(workflowName.trim());
+
+				if (workflowId > 0) workflowIds.add(workflowId);
+				else logger.warn("Skipping warm up of unknown workflow: " + workflowName.trim());
+			}
+		}
+
+		List<Long> recentWorkflowIds = new ArrayList<>(workflowDefinitionRepository.retrieveWorkflowIds());
+
+		Collections.sort(recentWorkflowIds, Collections.reverseOrder());
+
+		for (int i=0; i<recentWorkflowIds.size() && workflowIds.size() < globalWorkflowSettings.getDefinitionCacheSize(); i++)
+		{
+			workflowIds.add(recentWorkflowIds.get(i));
+		}
+
+		List<Long> warmUpWorkflowIds = new ArrayList<>(workflowIds);
+
+		return (warmUpWorkflowIds.size() > globalWorkflowSettings.getDefinitionCacheSize() ? warmUpWorkflowIds.subList(0, globalWorkflowSettings.getDefinitionCacheSize()) : warmUpWorkflowIds);
+	}
+}
\ No newline at end of file
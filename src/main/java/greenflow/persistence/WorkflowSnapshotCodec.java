@@ -0,0 +1,327 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import greenflow.command.Command;
+import greenflow.context.WorkflowContext;
+import greenflow.exception.WorkflowException;
+import greenflow.flowcontroller.FlowController;
+import greenflow.predicate.Predicate;
+import greenflow.predicate.relation.PredicateArray;
+import greenflow.utilities.CommandTypeService;
+import greenflow.utilities.DefaultServiceLocator;
+import greenflow.utilities.FlowControllerTypeService;
+import greenflow.utilities.PredicateTypeService;
+import greenflow.workflow.Workflow;
+import greenflow.workunit.WorkUnit;
+
+@Service
+public class WorkflowSnapshotCodec
+{
+	static final int magic = 0x47465753;
+
+	static final short formatVersion = 1;
+
+	@Autowired
+	private DefaultServiceLocator serviceLocator;
+
+	@Autowired
+	private CommandTypeService commandTypeService;
+
+	@Autowired
+	private FlowControllerTypeService flowControllerTypeService;
+
+	@Autowired
+	private PredicateTypeService predicateTypeService;
+
+	public byte[] encode(Workflow workflow)
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream out = new DataOutputStream(bytes))
+		{
+			out.writeInt(magic);
+			out.writeShort(formatVersion);
+
+			writeWorkUnit(out, workflow.getRootWorkUnit());
+		}
+		catch (IOException e)
+		{
+			throw new WorkflowException("Unable to encode snapshot of workflow id: " + workflow.getId());
+		}
+
+		return bytes.toByteArray();
+	}
+
+	public boolean isSupported(ByteBuffer buffer)
+	{
+		return buffer.remaining() >= 6 && buffer.getInt(buffer.position()) == magic && buffer.getShort(buffer.position() + 4) == formatVersion;
+	}
+
+	public Workflow decode(ByteBuffer snapshot, WorkflowContext workflowContext)
+	{
+		ByteBuffer buffer = snapshot.duplicate();
+
+		if (!isSupported(buffer)) throw new WorkflowException("Unsupported workflow snapshot format");
+
+		buffer.position(buffer.position() + 6);
+
+		Workflow workflow = new Workflow(workflowContext);
+
+		WorkUnit rootWorkUnit = readWorkUnit(buffer);
+
+		workflow.setAsRootWorkUnit(rootWorkUnit);
+
+		readChildWorkUnits(buffer, rootWorkUnit);
+
+		return workflow;
+	}
+
+	private void writeWorkUnit(DataOutputStream out, WorkUnit workUnit) throws IOException
+	{
+		out.writeLong(workUnit.getId());
+
+		if (workUnit.isFlowController())
+		{
+			out.writeByte(WorkflowConfigurationDao.flowControllerDiscriminator);
+			out.writeShort(workUnit.getFlowController().getTypeId());
+		}
+		else if (workUnit.isCommand())
+		{
+			out.writeByte(WorkflowConfigurationDao.commandDiscriminator);
+			out.writeShort(workUnit.getCommand().getTypeId());
+			writeString(out, workUnit.getCommand().getAssignTo());
+			writeStrings(out, workUnit.getCommand().getParameters());
+		}
+		else
+		{
+			out.writeByte(WorkflowConfigurationDao.containerBlockDiscriminator);
+		}
+
+		out.writeBoolean(!workUnit.isCommand() && workUnit.isReturnAtCompletion());
+		out.writeBoolean(!workUnit.isCommand() && workUnit.isPersistAfterReturn());
+
+		writeCount(out, workUnit.getDeclaredVariables().size());
+
+		for (Map.Entry<String, Object> variable : workUnit.getDeclaredVariables().entrySet())
+		{
+			writeString(out, variable.getKey());
+			writeString(out, (variable.getValue() != null ? variable.getValue().toString() : null));
+		}
+
+		writeStrings(out, (workUnit.isCommand() ? null : workUnit.getReturnedVariables()));
+
+		if (workUnit.isFlowController()) writePredicate(out, workUnit.getFlowController().getPredicate());
+
+		List<WorkUnit> childWorkUnits = workUnit.getChildWorkUnits();
+
+		out.writeInt(childWorkUnits.size());
+
+		for (WorkUnit childWorkUnit : childWorkUnits) writeWorkUnit(out, childWorkUnit);
+	}
+
+	private void writePredicate(DataOutputStream out, Predicate predicate) throws IOException
+	{
+		out.writeLong(predicate.getId());
+		out.writeShort(predicate.getTypeId());
+
+		writeStrings(out, predicate.getParameters());
+
+		writeCount(out, predicate.hasChildren() ? predicate.getChildren().size() : 0);
+
+		if (predicate.hasChildren())
+		{
+			for (Predicate childPredicate : predicate.getChildren()) writePredicate(out, childPredicate);
+		}
+	}
+
+	private void writeCount(DataOutputStream out, int count) throws IOException
+	{
+		if (count > 0xFFFF) throw new WorkflowException("Unable to encode snapshot entry with " + count + " elements, the limit is " + 0xFFFF);
+
+		out.writeShort(count);
+	}
+
+	private void writeStrings(DataOutputStream out, List<String> strings) throws IOException
+	{
+		writeCount(out, strings != null ? strings.size() : 0);
+
+		if (strings != null)
+		{
+			for (String string : strings) writeString(out, string);
+		}
+	}
+
+	private void writeString(DataOutputStream out, String string) throws IOException
+	{
+		if (string == null)
+		{
+			out.writeInt(-1);
+		}
+		else
+		{
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private void readChildWorkUnits(ByteBuffer buffer, WorkUnit parentWorkUnit)
+	{
+		int childCount = buffer.getInt();
+
+		for (int i=0; i<childCount; i++)
+		{
+			WorkUnit childWorkUnit = readWorkUnit(buffer);
+
+			parentWorkUnit.addChildWorkUnit(childWorkUnit);
+
+			readChildWorkUnits(buffer, childWorkUnit);
+		}
+	}
+
+	private WorkUnit readWorkUnit(ByteBuffer buffer)
+	{
+		long id = buffer.getLong();
+
+		WorkUnit workUnit;
+
+		byte discriminator = buffer.get();
+
+		if (discriminator == WorkflowConfigurationDao.flowControllerDiscriminator)
+		{
+			FlowController flowController = serviceLocator.getInstance(flowControllerTypeService.getTypeClass(buffer.getShort()));
+
+			workUnit = new WorkUnit(flowController);
+		}
+		else if (discriminator == WorkflowConfigurationDao.commandDiscriminator)
+		{
+			Command<?> command = serviceLocator.getInstance(commandTypeService.getTypeClass(buffer.getShort()));
+
+			command.setAssignTo(readString(buffer));
+
+			readStrings(buffer, command.getParameters());
+
+			workUnit = new WorkUnit(command);
+		}
+		else
+		{
+			workUnit = new WorkUnit();
+		}
+
+		workUnit.setId(id);
+
+		workUnit.setReturnAtCompletion(buffer.get() != 0);
+		workUnit.setPersistAfterReturn(buffer.get() != 0);
+
+		int variableCount = buffer.getShort() & 0xFFFF;
+
+		for (int i=0; i<variableCount; i++)
+		{
+			String name = readString(buffer);
+
+			workUnit.getDeclaredVariables().put(name, readString(buffer));
+		}
+
+		readStrings(buffer, workUnit.getReturnedVariables());
+
+		if (workUnit.isFlowController()) workUnit.getFlowController().setPredicate(readPredicate(buffer));
+
+		return workUnit;
+	}
+
+	private Predicate readPredicate(ByteBuffer buffer)
+	{
+		long id = buffer.getLong();
+
+		Class<? extends Predicate> clazz = predicateTypeService.getTypeClass(buffer.getShort());
+
+		int parameterCount = buffer.getShort() & 0xFFFF;
+
+		String[] parameters = new String[parameterCount];
+
+		for (int i=0; i<parameterCount; i++) parameters[i] = readString(buffer);
+
+		int childCount = buffer.getShort() & 0xFFFF;
+
+		Predicate predicate;
+
+		if (childCount == 0)
+		{
+			predicate = serviceLocator.getInstance(clazz);
+		}
+		else
+		{
+			Predicate[] childPredicates = new Predicate[childCount];
+
+			for (int i=0; i<childCount; i++) childPredicates[i] = readPredicate(buffer);
+
+			predicate = serviceLocator.getInstance(clazz, new PredicateArray(childPredicates));
+		}
+
+		predicate.setId(id);
+
+		for (String parameter : parameters) predicate.getParameters().add(parameter);
+
+		return predicate;
+	}
+
+	private void readStrings(ByteBuffer buffer, List<String> strings)
+	{
+		int count = buffer.getShort() & 0xFFFF;
+
+		for (int i=0; i<count; i++) strings.add(readString(buffer));
+	}
+
+	private String readString(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+
+		if (length < 0) return null;
+
+		String string;
+
+		if (buffer.hasArray())
+		{
+			string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+
+			buffer.position(buffer.position() + length);
+		}
+		else
+		{
+			byte[] bytes = new byte[length];
+
+			buffer.get(bytes);
+
+			string = new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		return string;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,60 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.persistence;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.springframework.stereotype.Component;
+
+import greenflow.exception.WorkflowException;
+
+@Component
+public class XmlObjectVariableCodec implements VariableTypeCodec<XmlObject>
+{
+	@Override
+	public short getTypeId()
+	{
+		return 32;
+	}
+
+	@Override
+	public Class<XmlObject> getType()
+	{
+		return XmlObject.class;
+	}
+
+	@Override
+	public byte[] encode(XmlObject value)
+	{
+		return value.xmlText().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public XmlObject decode(byte[] bytes)
+	{
+		try
+		{
+			return XmlObject.Factory.parse(new String(bytes, StandardCharsets.UTF_8));
+		}
+		catch (XmlException e)
+		{
+			throw new WorkflowException("Unable to decode xml variable value: " + e.getMessage());
+		}
+	}
+}
\ No newline at end of file
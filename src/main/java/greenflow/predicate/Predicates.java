@@ -67,6 +67,8 @@ public class Predicates
 				clonedPredicate = serviceLocator.getInstance(predicate.getClass(), new PredicateArray(Arrays.stream(predicate.getPredicates()).map(this::copyPredicate).toArray(Predicate[]::new)));
 			}
 
+			clonedPredicate.setId(predicate.getId());
+
 			for (String parameter : predicate.getParameters())
 			{
 				clonedPredicate.getParameters().add(parameter);
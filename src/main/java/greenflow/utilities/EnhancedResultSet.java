@@ -21,29 +21,62 @@ import greenflow.exception.WorkflowException;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 public class EnhancedResultSet
 {
 	private ResultSet resultSet;
 
+	private Map<String, Integer> columnIndexes;
+
 	public EnhancedResultSet(ResultSet resultSet)
 	{
 		this.resultSet = resultSet;
 	}
 
-	 <V> V getValue(String tableName, String columnName) throws SQLException
+	private Map<String, Integer> getColumnIndexes() throws SQLException
 	{
-		ResultSetMetaData metaData = resultSet.getMetaData();
-
-		for (int i=1; i<=metaData.getColumnCount(); i++)
+		if (columnIndexes == null)
 		{
-			if (metaData.getColumnLabel(i).equalsIgnoreCase(columnName) && metaData.getTableName(i).equalsIgnoreCase(tableName))
+			ResultSetMetaData metaData = resultSet.getMetaData();
+
+			columnIndexes = new HashMap<String, Integer>();
+
+			for (int i=1; i<=metaData.getColumnCount(); i++)
 			{
-				return (V) resultSet.getObject(i);
+				String key = getKey(metaData.getTableName(i), metaData.getColumnLabel(i));
+
+				if (!columnIndexes.containsKey(key))
+				{
+					columnIndexes.put(key, i);
+				}
 			}
-		}
+		}
+		return columnIndexes;
+	}
 
-		throw new WorkflowException(String.format("Strange. I cannot find this combination of table/column: tableName = %s, columnName = %s", tableName, columnName));
+	private static String getKey(String tableName, String columnName)
+	{
+		return (tableName == null ? "" : tableName.toLowerCase(Locale.ENGLISH)) + "." + columnName.toLowerCase(Locale.ENGLISH);
+	}
+
+	public int getColumnIndex(String tableName, String columnName) throws SQLException
+	{
+		Integer columnIndex = getColumnIndexes().get(getKey(tableName, columnName));
+
+		if (columnIndex == null)
+		{
+			throw new WorkflowException(String.format("Strange. I cannot find this combination of table/column: tableName = %s, columnName = %s", tableName, columnName));
+		}
+
+		return columnIndex;
+	}
+
+	 <V> V getValue(String tableName, String columnName) throws SQLException
+	{
+		return (V) resultSet.getObject(getColumnIndex(tableName, columnName));
 	}
 
 	public <U> U get(String tableName, String columnName) throws SQLException
@@ -56,9 +89,34 @@ public class EnhancedResultSet
 		return (U) resultSet.getObject(aliasName);
 	}
 
+	public long getLong(String tableName, String columnName) throws SQLException
+	{
+		return resultSet.getLong(getColumnIndex(tableName, columnName));
+	}
+
+	public int getInt(String tableName, String columnName) throws SQLException
+	{
+		return resultSet.getInt(getColumnIndex(tableName, columnName));
+	}
+
+	public short getShort(String tableName, String columnName) throws SQLException
+	{
+		return resultSet.getShort(getColumnIndex(tableName, columnName));
+	}
+
+	public boolean getBoolean(String tableName, String columnName) throws SQLException
+	{
+		return resultSet.getBoolean(getColumnIndex(tableName, columnName));
+	}
+
+	public String getString(String tableName, String columnName) throws SQLException
+	{
+		return resultSet.getString(getColumnIndex(tableName, columnName));
+	}
+
 	public boolean isNull(String tableName, String columnName) throws SQLException
 	{
-		return get(tableName, columnName) == null;
+		return resultSet.getObject(getColumnIndex(tableName, columnName)) == null;
 	}
 
 	public boolean isNull(String aliasName) throws SQLException
@@ -16,6 +16,307 @@
 
 package greenflow.utilities;
 
+import greenflow.conversation.ExecutionStateDurability;
+
 public class GlobalWorkflowSettingsUtilities
 {
+	private String jdbcDialect;
+
+	private int definitionCacheSize = 256;
+
+	private int definitionFetchSize = 500;
+
+	private int saveBatchSize = 500;
+
+	private int idBlockSize = 100;
+
+	private String definitionFile;
+
+	private boolean definitionFileExportEnabled;
+
+	private boolean definitionWarmUpEnabled;
+
+	private int definitionWarmUpThreads = 4;
+
+	private String definitionWarmUpNames;
+
+	private boolean definitionLazyLoading;
+
+	private boolean executionStateHotTierEnabled;
+
+	private ExecutionStateDurability executionStateDurability = ExecutionStateDurability.PER_TRANSACTION;
+
+	private long executionStateFlushInterval = 1000;
+
+	private int executionStateHotTierSize = 10000;
+
+	private boolean executionStatePruningEnabled;
+
+	private boolean groupCommitEnabled;
+
+	private long groupCommitWindow = 2;
+
+	private int groupCommitSize = 200;
+
+	private long conversationLockTimeout = 5000;
+
+	private boolean clusteringEnabled;
+
+	private long conversationLeaseDuration = 30000;
+
+	private int conversationMailboxCapacity = 64;
+
+	private int conversationMailboxThreads = 16;
+
+	private int workflowAffinityCacheSize = 1000;
+
+	public String getJdbcDialect()
+	{
+		return jdbcDialect;
+	}
+
+	public void setJdbcDialect(String jdbcDialect)
+	{
+		this.jdbcDialect = jdbcDialect;
+	}
+
+	public int getDefinitionCacheSize()
+	{
+		return definitionCacheSize;
+	}
+
+	public void setDefinitionCacheSize(int definitionCacheSize)
+	{
+		this.definitionCacheSize = definitionCacheSize;
+	}
+
+	public int getDefinitionFetchSize()
+	{
+		return definitionFetchSize;
+	}
+
+	public void setDefinitionFetchSize(int definitionFetchSize)
+	{
+		this.definitionFetchSize = definitionFetchSize;
+	}
+
+	public int getSaveBatchSize()
+	{
+		return saveBatchSize;
+	}
+
+	public void setSaveBatchSize(int saveBatchSize)
+	{
+		this.saveBatchSize = saveBatchSize;
+	}
+
+	public int getIdBlockSize()
+	{
+		return idBlockSize;
+	}
+
+	public void setIdBlockSize(int idBlockSize)
+	{
+		this.idBlockSize = idBlockSize;
+	}
+
+	public String getDefinitionFile()
+	{
+		return definitionFile;
+	}
+
+	public void setDefinitionFile(String definitionFile)
+	{
+		this.definitionFile = definitionFile;
+	}
+
+	public boolean isDefinitionFileExportEnabled()
+	{
+		return definitionFileExportEnabled;
+	}
+
+	public void setDefinitionFileExportEnabled(boolean definitionFileExportEnabled)
+	{
+		this.definitionFileExportEnabled = definitionFileExportEnabled;
+	}
+
+	public boolean isDefinitionWarmUpEnabled()
+	{
+		return definitionWarmUpEnabled;
+	}
+
+	public void setDefinitionWarmUpEnabled(boolean definitionWarmUpEnabled)
+	{
+		this.definitionWarmUpEnabled = definitionWarmUpEnabled;
+	}
+
+	public int getDefinitionWarmUpThreads()
+	{
+		return definitionWarmUpThreads;
+	}
+
+	public void setDefinitionWarmUpThreads(int definitionWarmUpThreads)
+	{
+		this.definitionWarmUpThreads = definitionWarmUpThreads;
+	}
+
+	public String getDefinitionWarmUpNames()
+	{
+		return definitionWarmUpNames;
+	}
+
+	public void setDefinitionWarmUpNames(String definitionWarmUpNames)
+	{
+		this.definitionWarmUpNames = definitionWarmUpNames;
+	}
+
+	public boolean isDefinitionLazyLoading()
+	{
+		return definitionLazyLoading;
+	}
+
+	public void setDefinitionLazyLoading(boolean definitionLazyLoading)
+	{
+		this.definitionLazyLoading = definitionLazyLoading;
+	}
+
+	public boolean isExecutionStateHotTierEnabled()
+	{
+		return executionStateHotTierEnabled;
+	}
+
+	public void setExecutionStateHotTierEnabled(boolean executionStateHotTierEnabled)
+	{
+		this.executionStateHotTierEnabled = executionStateHotTierEnabled;
+	}
+
+	public ExecutionStateDurability getExecutionStateDurability()
+	{
+		return executionStateDurability;
+	}
+
+	public void setExecutionStateDurability(ExecutionStateDurability executionStateDurability)
+	{
+		this.executionStateDurability = executionStateDurability;
+	}
+
+	public long getExecutionStateFlushInterval()
+	{
+		return executionStateFlushInterval;
+	}
+
+	public void setExecutionStateFlushInterval(long executionStateFlushInterval)
+	{
+		this.executionStateFlushInterval = executionStateFlushInterval;
+	}
+
+	public int getExecutionStateHotTierSize()
+	{
+		return executionStateHotTierSize;
+	}
+
+	public void setExecutionStateHotTierSize(int executionStateHotTierSize)
+	{
+		this.executionStateHotTierSize = executionStateHotTierSize;
+	}
+
+	public boolean isExecutionStatePruningEnabled()
+	{
+		return executionStatePruningEnabled;
+	}
+
+	public void setExecutionStatePruningEnabled(boolean executionStatePruningEnabled)
+	{
+		this.executionStatePruningEnabled = executionStatePruningEnabled;
+	}
+
+	public boolean isGroupCommitEnabled()
+	{
+		return groupCommitEnabled;
+	}
+
+	public void setGroupCommitEnabled(boolean groupCommitEnabled)
+	{
+		this.groupCommitEnabled = groupCommitEnabled;
+	}
+
+	public long getGroupCommitWindow()
+	{
+		return groupCommitWindow;
+	}
+
+	public void setGroupCommitWindow(long groupCommitWindow)
+	{
+		this.groupCommitWindow = groupCommitWindow;
+	}
+
+	public int getGroupCommitSize()
+	{
+		return groupCommitSize;
+	}
+
+	public void setGroupCommitSize(int groupCommitSize)
+	{
+		this.groupCommitSize = groupCommitSize;
+	}
+
+	public long getConversationLockTimeout()
+	{
+		return conversationLockTimeout;
+	}
+
+	public void setConversationLockTimeout(long conversationLockTimeout)
+	{
+		this.conversationLockTimeout = conversationLockTimeout;
+	}
+
+	public boolean isClusteringEnabled()
+	{
+		return clusteringEnabled;
+	}
+
+	public void setClusteringEnabled(boolean clusteringEnabled)
+	{
+		this.clusteringEnabled = clusteringEnabled;
+	}
+
+	public long getConversationLeaseDuration()
+	{
+		return conversationLeaseDuration;
+	}
+
+	public void setConversationLeaseDuration(long conversationLeaseDuration)
+	{
+		this.conversationLeaseDuration = conversationLeaseDuration;
+	}
+
+	public int getConversationMailboxCapacity()
+	{
+		return conversationMailboxCapacity;
+	}
+
+	public void setConversationMailboxCapacity(int conversationMailboxCapacity)
+	{
+		this.conversationMailboxCapacity = conversationMailboxCapacity;
+	}
+
+	public int getConversationMailboxThreads()
+	{
+		return conversationMailboxThreads;
+	}
+
+	public void setConversationMailboxThreads(int conversationMailboxThreads)
+	{
+		this.conversationMailboxThreads = conversationMailboxThreads;
+	}
+
+	public int getWorkflowAffinityCacheSize()
+	{
+		return workflowAffinityCacheSize;
+	}
+
+	public void setWorkflowAffinityCacheSize(int workflowAffinityCacheSize)
+	{
+		this.workflowAffinityCacheSize = workflowAffinityCacheSize;
+	}
 }
\ No newline at end of file
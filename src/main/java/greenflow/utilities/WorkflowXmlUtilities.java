@@ -79,7 +79,7 @@ public class WorkflowXmlUtilities {
 			}
 			eventWriter.add(eventFactory.createAttribute("persistence-id", String.valueOf(workflow.getId())));
 
-			workUnitToXml(workflow.getRootWorkUnit(), eventWriter, eventFactory);
+			workUnitToXml(workflow, workflow.getRootWorkUnit(), eventWriter, eventFactory);
 
 			eventWriter.add(eventFactory.createEndElement("", "", "workflow"));
 
@@ -97,7 +97,7 @@ public class WorkflowXmlUtilities {
 		return outputStream.toString();
 	}
 
-	private void workUnitToXml(WorkUnit workUnit, XMLEventWriter eventWriter, XMLEventFactory eventFactory) throws XMLStreamException
+	private void workUnitToXml(Workflow workflow, WorkUnit workUnit, XMLEventWriter eventWriter, XMLEventFactory eventFactory) throws XMLStreamException
 	{
 		if(workUnit.isFlowController())
 		{
@@ -112,11 +112,11 @@ public class WorkflowXmlUtilities {
 				predicateToXml(workUnit.getFlowController().getPredicate(), eventWriter, eventFactory);
 			}
 
-			if (!MapUtils.isEmpty(workUnit.getVariables()))
+			if (!MapUtils.isEmpty(workflow.getVariables(workUnit)))
 			{
 				eventWriter.add(eventFactory.createStartElement("", "", "variables"));
 
-				for (Map.Entry<String, Object> variable : workUnit.getVariables().entrySet())
+				for (Map.Entry<String, Object> variable : workflow.getVariables(workUnit).entrySet())
 				{
 					eventWriter.add(eventFactory.createStartElement("", "", "variable"));
 
@@ -132,7 +132,7 @@ public class WorkflowXmlUtilities {
 				eventWriter.add(eventFactory.createEndElement("", "", "variables"));
 			}
 
-			for (WorkUnit childWorkUnit : workUnit.getChildWorkUnits()) workUnitToXml(childWorkUnit, eventWriter, eventFactory);
+			for (WorkUnit childWorkUnit : workUnit.getChildWorkUnits()) workUnitToXml(workflow, childWorkUnit, eventWriter, eventFactory);
 
 			if (workUnit.isReturnAtCompletion())
 			{
@@ -181,7 +181,7 @@ public class WorkflowXmlUtilities {
 			eventWriter.add(eventFactory.createAttribute("id", workUnit.getTargetContainer().getBreadcrumbId()));
 			eventWriter.add(eventFactory.createAttribute("persistence-id", String.valueOf(workUnit.getTargetContainer().getId())));
 
-			for (WorkUnit childWorkUnit : workUnit.getChildWorkUnits()) workUnitToXml(childWorkUnit, eventWriter, eventFactory);			
+			for (WorkUnit childWorkUnit : workUnit.getChildWorkUnits()) workUnitToXml(workflow, childWorkUnit, eventWriter, eventFactory);			
 
 			eventWriter.add(eventFactory.createEndElement("", "", "command"));
 		}
@@ -191,11 +191,11 @@ public class WorkflowXmlUtilities {
 			eventWriter.add(eventFactory.createAttribute("id", workUnit.getTargetContainer().getBreadcrumbId()));
 			eventWriter.add(eventFactory.createAttribute("persistence-id", String.valueOf(workUnit.getTargetContainer().getId())));
 
-			if (!MapUtils.isEmpty(workUnit.getVariables()))
+			if (!MapUtils.isEmpty(workflow.getVariables(workUnit)))
 			{
 				eventWriter.add(eventFactory.createStartElement("", "", "variables"));
 
-				for (Map.Entry<String, Object> variable : workUnit.getVariables().entrySet())
+				for (Map.Entry<String, Object> variable : workflow.getVariables(workUnit).entrySet())
 				{
 					eventWriter.add(eventFactory.createStartElement("", "", "variable"));
 
@@ -211,7 +211,7 @@ public class WorkflowXmlUtilities {
 				eventWriter.add(eventFactory.createEndElement("", "", "variables"));
 			}
 
-			for (WorkUnit childWorkUnit : workUnit.getChildWorkUnits()) workUnitToXml(childWorkUnit, eventWriter, eventFactory);
+			for (WorkUnit childWorkUnit : workUnit.getChildWorkUnits()) workUnitToXml(workflow, childWorkUnit, eventWriter, eventFactory);
 
 			if (workUnit.isReturnAtCompletion())
 			{
@@ -19,9 +19,10 @@ package greenflow.workflow;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,15 +31,15 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.CharMatcher;
-import com.google.common.base.Splitter;
-
 import greenflow.container.GenericContainerNode;
 import greenflow.container.interaction.TargetContainerElement;
 import greenflow.context.WorkflowContext;
 import greenflow.exception.WorkflowException;
 import greenflow.exception.WorkflowExecutionSuspensionException;
 import greenflow.exception.WorkflowExecutionTerminationException;
+import greenflow.flowcontroller.FlowController;
+import greenflow.flowcontroller.WhileFlowController;
+import greenflow.predicate.Predicate;
 import greenflow.workunit.WorkUnit;
 
 public class Workflow
@@ -46,18 +47,26 @@ public class Workflow
 	private static final Logger logger = LoggerFactory.getLogger(Workflow.class);
 
 	private long Id;
+
+	private int version = 1;
 
 	private WorkUnit rootWorkUnit;
 
 	private GenericContainerNode<WorkUnit> genericContainerNode;
 
-	private String executionTerminationPoint;
+	private Workflow definition;
 
-	private String executionSuspensionPoint;
+	private boolean sealed = false;
+
+	private WorkflowState state = new WorkflowState();
 
 	private WorkflowContext workflowContext;
+
+	private volatile WorkflowProgram program;
+
+	private volatile boolean programCompiled;
 
-	private Map<WorkUnit, Set<String>> dirtyVariables = new HashMap<WorkUnit, Set<String>>();
+	private static final ThreadLocal<Workflow> boundWorkflow = new ThreadLocal<Workflow>();
 
 	private String name;
 
@@ -69,10 +78,29 @@ public class Workflow
 
 	public Workflow(WorkflowContext workflowContext)
 	{
+		definition = this;
+
 		setWorkflowContext(workflowContext);
 
 		setAsRootWorkUnit(new WorkUnit());
 	}
+
+	public Workflow(Workflow definition, WorkflowContext workflowContext)
+	{
+		this.definition = definition.getDefinition();
+
+		setWorkflowContext(workflowContext);
+
+		setId(this.definition.getId());
+		setVersion(this.definition.getVersion());
+		setName(this.definition.getName());
+		setDescription(this.definition.getDescription());
+		setCreationDate(this.definition.getCreationDate());
+		setCreator(this.definition.getCreator());
+
+		setRootWorkUnit(this.definition.getRootWorkUnit());
+		genericContainerNode = this.definition.genericContainerNode;
+	}
 
 	private static final AtomicLong LAST_TIME_MS = new AtomicLong();
 
@@ -101,24 +129,160 @@ public class Workflow
 
 	public void execute()
 	{
+		Workflow previousBoundWorkflow = bind();
+
 		try
 		{
-			getRootWorkUnit().execute();
-
-			logger.debug("Execution: workflow completed.");
+			setExecutionTerminationPoint(null);
+
+			WorkflowProgram program = getProgram();
+
+			ExecutionOutcome outcome = (program != null ? program.execute(this) : getRootWorkUnit().execute());
+
+			if (outcome == ExecutionOutcome.TERMINATE)
+			{
+				logger.debug("Termination: terminating workflow execution on workunit " + getExecutionTerminationPoint());
+			}
+			else if (outcome == ExecutionOutcome.SUSPEND)
+			{
+				logger.debug("Suspension: suspending workflow execution on workunit " + getExecutionSuspensionPoint());
+			}
+			else
+			{
+				logger.debug("Execution: workflow completed.");
+			}
 		}
 		catch (WorkflowExecutionTerminationException e)
 		{
-			setExecutionTerminationPoint(e.getMessage());
+			if (e.getMessage() != null)
+			{
+				setExecutionTerminationPoint(e.getMessage());
+			}
 
 			logger.debug("Termination: terminating workflow execution on workunit " + getExecutionTerminationPoint());
 		}
 		catch (WorkflowExecutionSuspensionException e)
 		{
-			setExecutionSuspensionPoint(e.getMessage());
+			if (e.getMessage() != null)
+			{
+				setExecutionSuspensionPoint(e.getMessage());
+			}
 
 			logger.debug("Suspension: suspending workflow execution on workunit " + getExecutionSuspensionPoint());
 		}
+		finally
+		{
+			unbind(previousBoundWorkflow);
+		}
+	}
+
+	private WorkflowProgram getProgram()
+	{
+		if (!getDefinition().isSealed())
+		{
+			return null;
+		}
+
+		compile();
+
+		return getDefinition().program;
+	}
+
+	public void compile()
+	{
+		Workflow definition = getDefinition();
+
+		if (definition.isSealed() && !definition.programCompiled)
+		{
+			synchronized (definition)
+			{
+				if (!definition.programCompiled)
+				{
+					definition.program = WorkflowProgram.compile(definition.getRootWorkUnit());
+					definition.programCompiled = true;
+
+					logger.debug("Compiled workflow id: " + definition.getId() + " into " + (definition.program != null ? definition.program.size() + " instruction(s)" : "no program"));
+				}
+			}
+		}
+	}
+
+	public void childWorkUnitsLoaded()
+	{
+		Workflow definition = getDefinition();
+
+		if (definition.isSealed())
+		{
+			synchronized (definition)
+			{
+				if (definition.program == null)
+				{
+					definition.programCompiled = false;
+				}
+			}
+		}
+	}
+
+	private Workflow bind()
+	{
+		Workflow previousBoundWorkflow = boundWorkflow.get();
+
+		boundWorkflow.set(this);
+
+		return previousBoundWorkflow;
+	}
+
+	private static void unbind(Workflow previousBoundWorkflow)
+	{
+		if (previousBoundWorkflow == null)
+		{
+			boundWorkflow.remove();
+		}
+		else
+		{
+			boundWorkflow.set(previousBoundWorkflow);
+		}
+	}
+
+	public Workflow getBoundInstance()
+	{
+		Workflow workflow = boundWorkflow.get();
+
+		return (workflow != null && workflow.getDefinition() == getDefinition()) ? workflow : null;
+	}
+
+	public Object lookUpVariableValue(WorkUnit workUnit, String variable)
+	{
+		Workflow previousBoundWorkflow = bind();
+
+		try
+		{
+			return workUnit.lookUpVariableValue(variable);
+		}
+		finally
+		{
+			unbind(previousBoundWorkflow);
+		}
+	}
+
+	public Map<String, Object> getVariables(WorkUnit workUnit)
+	{
+		if (isSealed())
+		{
+			return Collections.unmodifiableMap(workUnit.getDeclaredVariables());
+		}
+
+		return getState().getVariables(workUnit);
+	}
+
+	public Predicate getEvaluatedPredicate(FlowController flowController)
+	{
+		return getState().getEvaluatedPredicate(flowController);
+	}
+
+	public void setEvaluatedPredicate(FlowController flowController, Predicate evaluatedPredicate)
+	{
+		getState().setEvaluatedPredicate(flowController, evaluatedPredicate);
 	}
 
 	public String toString() {
@@ -150,6 +314,11 @@ public class Workflow
 
 	public void setAsRootWorkUnit(WorkUnit workUnit)
 	{
+		if (getDefinition().isSealed())
+		{
+			throw new WorkflowException("addAsRootWorkUnit error: cannot modify a shared workflow definition.");
+		}
+
 		if(workUnit.getFlowController() == null && workUnit.getCommand() == null)
 		{
 			setRootWorkUnit(workUnit);
@@ -170,41 +339,105 @@ public class Workflow
 
 	public WorkUnit getWorkUnitByBreadcrumbId(String breadcrumbId)
 	{
-		WorkUnit workUnit = getRootWorkUnit();
-
-		try
-		{
-			for (String crumb : Splitter.on('.').splitToList(breadcrumbId).subList(1, CharMatcher.is('.').countIn(breadcrumbId) + 1))
-			{
-				workUnit = workUnit.getChildWorkUnits().get(Integer.parseInt(crumb)-1);
-			}
+		GenericContainerNode<WorkUnit> container = (genericContainerNode != null ? genericContainerNode.getTreeByBreadcrumbId(breadcrumbId) : null);
+
+		if (container == null && breadcrumbId.lastIndexOf('.') > 0)
+		{
+			WorkUnit parentWorkUnit = getWorkUnitByBreadcrumbId(breadcrumbId.substring(0, breadcrumbId.lastIndexOf('.')));
+
+			if (!parentWorkUnit.isChildWorkUnitsLoaded())
+			{
+				parentWorkUnit.getChildWorkUnits();
+
+				container = genericContainerNode.getTreeByBreadcrumbId(breadcrumbId);
+			}
 		}
-		catch (Exception e)
+
+		if (container == null)
 		{
-			workUnit = null;
+			throw new WorkflowException("getWorkUnitByBreadcrumbId error: no work unit with breadcrumb id: " + breadcrumbId + " in workflow id: " + getId());
 		}
 
-		return workUnit;
+		return container.getCoreTree().getHead();
 	}
 
+	public Set<Long> getLiveVariableScopeIds(String breadcrumbId)
+	{
+		WorkUnit workUnit = getWorkUnitByBreadcrumbId(breadcrumbId);
+
+		Set<Long> liveScopeIds = new HashSet<Long>();
+		WorkUnit outermostLoop = null;
+
+		for (; workUnit != null; workUnit = workUnit.getParentWorkUnit())
+		{
+			liveScopeIds.add(workUnit.getId());
+
+			if (workUnit.getFlowController() instanceof WhileFlowController)
+			{
+				outermostLoop = workUnit;
+			}
+		}
+
+		if (outermostLoop != null)
+		{
+			Set<Long> loopScopeIds = outermostLoop.getVariableScopeIds();
+
+			if (loopScopeIds == null)
+			{
+				return null;
+			}
+
+			liveScopeIds.addAll(loopScopeIds);
+		}
+
+		return liveScopeIds;
+	}
+
 	public String getExecutionTerminationPoint()
 	{
-		return executionTerminationPoint;
+		return getState().getExecutionTerminationPoint();
 	}
 
 	public void setExecutionTerminationPoint(String executionTerminationPoint)
 	{
-		this.executionTerminationPoint = executionTerminationPoint;
+		getState().setExecutionTerminationPoint(executionTerminationPoint);
 	}
 
 	public String getExecutionSuspensionPoint()
 	{
-		return executionSuspensionPoint;
+		return getState().getExecutionSuspensionPoint();
 	}
 
 	public void setExecutionSuspensionPoint(String executionSuspensionPoint)
 	{
-		this.executionSuspensionPoint = executionSuspensionPoint;
+		getState().setExecutionSuspensionPoint(executionSuspensionPoint);
+	}
+
+	public WorkflowState getState()
+	{
+		if (isSealed())
+		{
+			throw new WorkflowException("getState error: a shared workflow definition has no runtime state.");
+		}
+
+		return state;
+	}
+
+	public Workflow getDefinition()
+	{
+		return definition;
+	}
+
+	public boolean isSealed()
+	{
+		return sealed;
+	}
+
+	public void seal()
+	{
+		sealed = true;
+
+		getRootWorkUnit().seal();
 	}
 
 	public WorkflowContext getWorkflowContext()
@@ -212,7 +445,7 @@ public class Workflow
 		return workflowContext;
 	}
 
-	private void setWorkflowContext(WorkflowContext workflowContext)
+	public void setWorkflowContext(WorkflowContext workflowContext)
 	{
 		this.workflowContext = workflowContext;
 	}
@@ -237,6 +470,16 @@ public class Workflow
 		Id = id;
 	}
 
+	public int getVersion()
+	{
+		return version;
+	}
+
+	public void setVersion(int version)
+	{
+		this.version = version;
+	}
+
 	public String getDescription()
 	{
 		return description;
@@ -269,6 +512,6 @@ public class Workflow
 
 	public Map<WorkUnit, Set<String>> getDirtyVariables()
 	{
-		return dirtyVariables;
+		return getState().getDirtyVariables();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,336 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.workflow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import greenflow.exception.WorkflowException;
+import greenflow.flowcontroller.CompilableFlowController;
+import greenflow.workunit.WorkUnit;
+
+class WorkflowProgram
+{
+	private static final Logger logger = LoggerFactory.getLogger(WorkflowProgram.class);
+
+	private static final byte COMMAND = 0;
+
+	private static final byte ENTER = 1;
+
+	private static final byte LOOP = 2;
+
+	private static final byte LOOP_BACK = 3;
+
+	private static final byte END = 4;
+
+	private final byte[] opcodes;
+
+	private final WorkUnit[] workUnits;
+
+	private final int[] jumpTargets;
+
+	private final Map<String, ResumePoint> resumePoints;
+
+	private WorkflowProgram(byte[] opcodes, WorkUnit[] workUnits, int[] jumpTargets, Map<String, ResumePoint> resumePoints)
+	{
+		this.opcodes = opcodes;
+		this.workUnits = workUnits;
+		this.jumpTargets = jumpTargets;
+		this.resumePoints = resumePoints;
+	}
+
+	static WorkflowProgram compile(WorkUnit rootWorkUnit)
+	{
+		Compiler compiler = new Compiler();
+
+		return compiler.compile(rootWorkUnit) ? new WorkflowProgram(Arrays.copyOf(compiler.opcodes, compiler.size), Arrays.copyOf(compiler.workUnits, compiler.size), Arrays.copyOf(compiler.jumpTargets, compiler.size), compiler.resumePoints) : null;
+	}
+
+	ExecutionOutcome execute(Workflow workflow)
+	{
+		int pc = 0;
+		WorkUnit resumedLoop = null;
+		ExecutionOutcome outcome;
+
+		if (workflow.getExecutionSuspensionPoint() != null)
+		{
+			ResumePoint resumePoint = resumePoints.get(workflow.getExecutionSuspensionPoint());
+
+			if (resumePoint == null)
+			{
+				throw new WorkflowException("Unable to resume workflow execution: unknown suspension point " + workflow.getExecutionSuspensionPoint() + ".");
+			}
+
+			logger.debug("Resuming workflow execution at instruction " + resumePoint.pc + " (suspension point: " + workflow.getExecutionSuspensionPoint() + ")");
+
+			for (CompilableFlowController flowController : resumePoint.flowControllers)
+			{
+				flowController.resumeBlock();
+			}
+
+			pc = resumePoint.pc;
+
+			if (resumePoint.loop)
+			{
+				resumedLoop = workUnits[pc];
+			}
+			else
+			{
+				workflow.setExecutionSuspensionPoint(null);
+			}
+		}
+
+		while (pc < opcodes.length)
+		{
+			WorkUnit workUnit = workUnits[pc];
+
+			switch (opcodes[pc])
+			{
+				case COMMAND:
+					outcome = workUnit.executeCommand();
+					if (outcome != ExecutionOutcome.CONTINUE)
+					{
+						return outcome;
+					}
+					pc++;
+					break;
+
+				case ENTER:
+					pc = (((CompilableFlowController) workUnit.getFlowController()).enterBlock() ? pc + 1 : jumpTargets[pc]);
+					break;
+
+				case LOOP:
+					if (((CompilableFlowController) workUnit.getFlowController()).enterBlock())
+					{
+						if (resumedLoop == workUnit)
+						{
+							workflow.setExecutionSuspensionPoint(null);
+
+							resumedLoop = null;
+						}
+
+						pc++;
+					}
+					else
+					{
+						pc = jumpTargets[pc];
+					}
+					break;
+
+				case LOOP_BACK:
+					if (workUnit.isReturnAtCompletion())
+					{
+						return workUnit.doReturn();
+					}
+					pc = jumpTargets[pc];
+					break;
+
+				case END:
+					if (workUnit.isReturnAtCompletion())
+					{
+						if (resumedLoop == workUnit)
+						{
+							workflow.setExecutionSuspensionPoint(null);
+
+							resumedLoop = null;
+						}
+						else if (resumedLoop == null)
+						{
+							return workUnit.doReturn();
+						}
+					}
+					pc++;
+					break;
+
+				default:
+					throw new WorkflowException("Invalid workflow instruction at " + pc + ".");
+			}
+		}
+
+		return ExecutionOutcome.CONTINUE;
+	}
+
+	int size()
+	{
+		return opcodes.length;
+	}
+
+	private static class ResumePoint
+	{
+		private final int pc;
+
+		private final boolean loop;
+
+		private final CompilableFlowController[] flowControllers;
+
+		ResumePoint(int pc, boolean loop, CompilableFlowController[] flowControllers)
+		{
+			this.pc = pc;
+			this.loop = loop;
+			this.flowControllers = flowControllers;
+		}
+	}
+
+	private static class Compiler
+	{
+		private byte[] opcodes = new byte[64];
+
+		private WorkUnit[] workUnits = new WorkUnit[64];
+
+		private int[] jumpTargets = new int[64];
+
+		private int size;
+
+		private Map<String, ResumePoint> resumePoints = new HashMap<String, ResumePoint>();
+
+		boolean compile(WorkUnit rootWorkUnit)
+		{
+			Deque<Block> blocks = new ArrayDeque<Block>();
+
+			blocks.push(new Block(rootWorkUnit, new ArrayList<CompilableFlowController>()));
+
+			while (!blocks.isEmpty())
+			{
+				Block block = blocks.pop();
+				WorkUnit workUnit = block.workUnit;
+
+				if (!block.opened)
+				{
+					CompilableFlowController flowController = null;
+
+					if (workUnit.isFlowController())
+					{
+						if (!(workUnit.getFlowController() instanceof CompilableFlowController))
+						{
+							logger.debug("Flow controller " + workUnit.getFlowController().getSymbolicName() + " cannot be compiled, falling back to tree-walking execution");
+
+							return false;
+						}
+
+						flowController = (CompilableFlowController) workUnit.getFlowController();
+					}
+
+					block.opened = true;
+					block.start = size;
+					block.loop = (flowController != null && flowController.isLoop());
+
+					List<CompilableFlowController> enclosingFlowControllers = block.enclosingFlowControllers;
+
+					if (flowController != null)
+					{
+						emit(flowController.isLoop() ? LOOP : ENTER, workUnit, -1);
+
+						enclosingFlowControllers = new ArrayList<CompilableFlowController>(enclosingFlowControllers);
+						enclosingFlowControllers.add(flowController);
+
+						block.resumeFlowControllers = (flowController.isLoop() ? block.enclosingFlowControllers : enclosingFlowControllers);
+					}
+					else
+					{
+						block.resumeFlowControllers = block.enclosingFlowControllers;
+					}
+
+					blocks.push(block);
+
+					if (workUnit.isCommand())
+					{
+						emit(COMMAND, workUnit, -1);
+					}
+					else
+					{
+						if (!workUnit.isChildWorkUnitsLoaded())
+						{
+							logger.debug("Work unit " + workUnit.getId() + " has not loaded its child work units yet, falling back to tree-walking execution");
+
+							return false;
+						}
+
+						List<WorkUnit> childWorkUnits = workUnit.getChildWorkUnits();
+
+						for (int i=childWorkUnits.size()-1; i>=0; i--)
+						{
+							blocks.push(new Block(childWorkUnits.get(i), enclosingFlowControllers));
+						}
+					}
+				}
+				else
+				{
+					if (block.loop)
+					{
+						emit(LOOP_BACK, workUnit, block.start);
+					}
+
+					if (workUnit.isFlowController())
+					{
+						jumpTargets[block.start] = size;
+					}
+
+					emit(END, workUnit, -1);
+
+					resumePoints.put(workUnit.getBreadcrumbId(), new ResumePoint(block.loop ? block.start : size, block.loop, block.resumeFlowControllers.toArray(new CompilableFlowController[block.resumeFlowControllers.size()])));
+				}
+			}
+
+			return true;
+		}
+
+		private void emit(byte opcode, WorkUnit workUnit, int jumpTarget)
+		{
+			if (size == opcodes.length)
+			{
+				opcodes = Arrays.copyOf(opcodes, size * 2);
+				workUnits = Arrays.copyOf(workUnits, size * 2);
+				jumpTargets = Arrays.copyOf(jumpTargets, size * 2);
+			}
+
+			opcodes[size] = opcode;
+			workUnits[size] = workUnit;
+			jumpTargets[size] = jumpTarget;
+
+			size++;
+		}
+	}
+
+	private static class Block
+	{
+		private final WorkUnit workUnit;
+
+		private final List<CompilableFlowController> enclosingFlowControllers;
+
+		private List<CompilableFlowController> resumeFlowControllers;
+
+		private boolean opened;
+
+		private boolean loop;
+
+		private int start;
+
+		Block(WorkUnit workUnit, List<CompilableFlowController> enclosingFlowControllers)
+		{
+			this.workUnit = workUnit;
+			this.enclosingFlowControllers = enclosingFlowControllers;
+		}
+	}
+}
\ No newline at end of file
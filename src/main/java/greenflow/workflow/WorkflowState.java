@@ -0,0 +1,157 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.workflow;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import greenflow.flowcontroller.FlowController;
+import greenflow.predicate.Predicate;
+import greenflow.workunit.WorkUnit;
+
+public class WorkflowState
+{
+	private String executionTerminationPoint;
+
+	private String executionSuspensionPoint;
+
+	private Map<WorkUnit, Map<String, Object>> variables = new HashMap<WorkUnit, Map<String, Object>>();
+
+	private Map<Long, Map<String, Object>> restoredVariables = new HashMap<Long, Map<String, Object>>();
+
+	private Map<FlowController, Predicate> evaluatedPredicates = new HashMap<FlowController, Predicate>();
+
+	private Map<WorkUnit, Set<String>> dirtyVariables = new HashMap<WorkUnit, Set<String>>();
+
+	private Set<Long> persistedScopes = new HashSet<Long>();
+
+	private Set<Long> prunedScopes = new HashSet<Long>();
+
+	public Map<String, Object> getVariables(WorkUnit workUnit)
+	{
+		Map<String, Object> workUnitVariables = variables.get(workUnit);
+
+		if (workUnitVariables == null)
+		{
+			workUnitVariables = new LinkedHashMap<String, Object>(workUnit.getDeclaredVariables());
+
+			Map<String, Object> workUnitRestoredVariables = restoredVariables.remove(workUnit.getId());
+
+			if (workUnitRestoredVariables != null)
+			{
+				workUnitVariables.putAll(workUnitRestoredVariables);
+			}
+
+			variables.put(workUnit, workUnitVariables);
+		}
+
+		return workUnitVariables;
+	}
+
+	public boolean containsVariable(WorkUnit workUnit, String variable)
+	{
+		Map<String, Object> workUnitVariables = variables.get(workUnit);
+
+		if (workUnitVariables != null)
+		{
+			return workUnitVariables.containsKey(variable);
+		}
+
+		Map<String, Object> workUnitRestoredVariables = restoredVariables.get(workUnit.getId());
+
+		return workUnit.getDeclaredVariables().containsKey(variable) || (workUnitRestoredVariables != null && workUnitRestoredVariables.containsKey(variable));
+	}
+
+	public void restoreVariables(Map<Long, Map<String, Object>> workUnitVariableMap)
+	{
+		restoredVariables.putAll(workUnitVariableMap);
+
+		persistedScopes.addAll(workUnitVariableMap.keySet());
+	}
+
+	public void pruneScopes(Set<Long> liveScopeIds)
+	{
+		for (WorkUnit workUnit : dirtyVariables.keySet())
+		{
+			persistedScopes.add(workUnit.getId());
+		}
+
+		for (Iterator<Long> scopes = persistedScopes.iterator(); scopes.hasNext(); )
+		{
+			Long scopeId = scopes.next();
+
+			if (!liveScopeIds.contains(scopeId))
+			{
+				scopes.remove();
+
+				prunedScopes.add(scopeId);
+				restoredVariables.remove(scopeId);
+			}
+		}
+
+		variables.keySet().removeIf(workUnit -> !liveScopeIds.contains(workUnit.getId()));
+		dirtyVariables.keySet().removeIf(workUnit -> !liveScopeIds.contains(workUnit.getId()));
+	}
+
+	public Set<Long> drainPrunedScopes()
+	{
+		Set<Long> drainedScopes = prunedScopes;
+
+		prunedScopes = new HashSet<Long>();
+
+		return drainedScopes;
+	}
+
+	public Predicate getEvaluatedPredicate(FlowController flowController)
+	{
+		return evaluatedPredicates.get(flowController);
+	}
+
+	public void setEvaluatedPredicate(FlowController flowController, Predicate evaluatedPredicate)
+	{
+		evaluatedPredicates.put(flowController, evaluatedPredicate);
+	}
+
+	public String getExecutionTerminationPoint()
+	{
+		return executionTerminationPoint;
+	}
+
+	public void setExecutionTerminationPoint(String executionTerminationPoint)
+	{
+		this.executionTerminationPoint = executionTerminationPoint;
+	}
+
+	public String getExecutionSuspensionPoint()
+	{
+		return executionSuspensionPoint;
+	}
+
+	public void setExecutionSuspensionPoint(String executionSuspensionPoint)
+	{
+		this.executionSuspensionPoint = executionSuspensionPoint;
+	}
+
+	public Map<WorkUnit, Set<String>> getDirtyVariables()
+	{
+		return dirtyVariables;
+	}
+}
\ No newline at end of file
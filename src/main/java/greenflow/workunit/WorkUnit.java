@@ -17,22 +17,26 @@
 package greenflow.workunit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import greenflow.command.Command;
+import greenflow.command.CommandResult;
 import greenflow.container.interaction.TargetContainerElement;
-import greenflow.exception.WorkflowExecutionSuspensionException;
+import greenflow.exception.WorkflowException;
 import greenflow.flowcontroller.FlowController;
+import greenflow.workflow.ExecutionOutcome;
 import greenflow.workflow.Workflow;
 
 import com.google.common.base.CharMatcher;
@@ -41,6 +45,8 @@ import com.google.common.base.Splitter;
 public class WorkUnit
 {
 	private static final Logger logger = LoggerFactory.getLogger(WorkUnit.class);
+
+	private static final Pattern literalPattern = Pattern.compile("^\'(\\w)*\'$");
 
 	private FlowController flowController;
 
@@ -59,7 +65,25 @@ public class WorkUnit
 	private boolean persistAfterReturn = true;
 
 	private TargetContainerElement<WorkUnit> targetContainer;
-
+
+	private volatile ChildWorkUnitLoader childWorkUnitLoader;
+
+	private boolean loadingChildWorkUnits;
+
+	private volatile List<WorkUnit> childWorkUnits = Collections.emptyList();
+
+	private List<WorkUnit> attachedChildWorkUnits;
+
+	private WorkUnit parentWorkUnit;
+
+	private WorkUnit previousSiblingWorkUnit;
+
+	private WorkUnit nextSiblingWorkUnit;
+
+	private Map<String, WorkUnit> variableScopes;
+
+	private volatile Set<Long> variableScopeIds;
+
 	public WorkUnit() {}
 
 	public WorkUnit(FlowController flowController)
@@ -90,139 +114,336 @@ public class WorkUnit
 
 	public List<WorkUnit> getChildWorkUnits()
 	{
-		List<WorkUnit> childWorkUnits = new ArrayList<WorkUnit>(getTargetContainer().getChildren());
+		loadChildWorkUnits();
 
-		Collections.sort(childWorkUnits, new Comparator<WorkUnit>() {
-				@Override
-				public int compare(WorkUnit o1, WorkUnit o2) {
-					return new Long(o1.getTargetContainer().getId()).compareTo(new Long(o2.getTargetContainer().getId()));
-				}
-			});
 		return childWorkUnits;
 	}
 
 	public List<WorkUnit> getDescendants()
 	{
-		return getTargetContainer().getDescendants();
+		List<WorkUnit> descendants = new ArrayList<WorkUnit>();
+
+		collectDescendants(descendants);
+
+		return descendants;
+	}
+
+	private void collectDescendants(List<WorkUnit> descendants)
+	{
+		descendants.add(this);
+
+		for (WorkUnit childWorkUnit : getChildWorkUnits())
+		{
+			childWorkUnit.collectDescendants(descendants);
+		}
 	}
 
 	public WorkUnit getParentWorkUnit()
 	{
-		return getTargetContainer().getParent();
+		return parentWorkUnit;
 	}
 
 	public String getBreadcrumbId()
 	{
-		return getTargetContainer().getBreadcrumbId();
+		return targetContainer.getBreadcrumbId();
 	}
 
 	public WorkUnit getPreviousSiblingWorkUnit()
 	{
-		List<WorkUnit> childWorkUnits = getParentWorkUnit().getChildWorkUnits();
-		ListIterator<WorkUnit> listIterator = childWorkUnits.listIterator(childWorkUnits.indexOf(this));
-		if (listIterator.hasPrevious())
-		{
-			return listIterator.previous();
-		}
-		return null;
+		return previousSiblingWorkUnit;
 	}
 
 	public WorkUnit getNextSiblingWorkUnit()
 	{
-		List<WorkUnit> childWorkUnits = getParentWorkUnit().getChildWorkUnits();
-		ListIterator<WorkUnit> listIterator = childWorkUnits.listIterator(childWorkUnits.indexOf(this));
-		if (listIterator.hasNext())
-		{
-			return listIterator.next();
-		}
-		return null;
+		return nextSiblingWorkUnit;
 	}
 
 	public void addChildWorkUnit(WorkUnit childWorkUnit)
 	{
-		childWorkUnit.setWorkflow(getWorkflow());		
-
+		if (workflow != null && workflow.getDefinition().isSealed())
+		{
+			throw new WorkflowException("addChildWorkUnit error: cannot modify a shared workflow definition.");
+		}
+
+		loadChildWorkUnits();
+
+		attachChildWorkUnit(childWorkUnit);
+	}
+
+	private void attachChildWorkUnit(WorkUnit childWorkUnit)
+	{
 		if (getCommand() != null)
 		{
 			WorkUnit firstChildWorkUnit = new WorkUnit(getCommand());
 			setCommand(null);
-			addChildWorkUnit(firstChildWorkUnit);
+			attachChildWorkUnit(firstChildWorkUnit);
+		}
+
+		if (attachedChildWorkUnits == null)
+		{
+			attachedChildWorkUnits = new ArrayList<WorkUnit>(childWorkUnits);
+
+			childWorkUnits = Collections.unmodifiableList(attachedChildWorkUnits);
+		}
+
+		linkChildWorkUnit(attachedChildWorkUnits, childWorkUnit);
+	}
+
+	private void linkChildWorkUnit(List<WorkUnit> siblingWorkUnits, WorkUnit childWorkUnit)
+	{
+		childWorkUnit.setWorkflow(workflow);
+
+		childWorkUnit.setTargetContainer(targetContainer.addChildWorkUnit(childWorkUnit));
+
+		childWorkUnit.targetContainer.setId(childWorkUnit.getId());
+
+		childWorkUnit.parentWorkUnit = this;
+
+		if (!siblingWorkUnits.isEmpty())
+		{
+			childWorkUnit.previousSiblingWorkUnit = siblingWorkUnits.get(siblingWorkUnits.size() - 1);
+			childWorkUnit.previousSiblingWorkUnit.nextSiblingWorkUnit = childWorkUnit;
+		}
+
+		siblingWorkUnits.add(childWorkUnit);
+
+		if (variableScopes != null)
+		{
+			childWorkUnit.seal();
+		}
+	}
+
+	public void seal()
+	{
+		if (attachedChildWorkUnits != null)
+		{
+			childWorkUnits = Collections.unmodifiableList(Arrays.asList(attachedChildWorkUnits.toArray(new WorkUnit[attachedChildWorkUnits.size()])));
+
+			attachedChildWorkUnits = null;
+		}
+
+		Map<String, WorkUnit> inheritedVariableScopes = (parentWorkUnit != null ? parentWorkUnit.variableScopes : Collections.<String, WorkUnit>emptyMap());
+
+		if (inheritedVariableScopes == null)
+		{
+			return;
+		}
+
+		if (variables == null || variables.isEmpty())
+		{
+			variableScopes = inheritedVariableScopes;
+		}
+		else
+		{
+			Map<String, WorkUnit> resolvedVariableScopes = new HashMap<String, WorkUnit>(inheritedVariableScopes);
+
+			for (String variable : variables.keySet())
+			{
+				resolvedVariableScopes.put(variable, this);
+			}
+
+			variableScopes = resolvedVariableScopes;
+		}
+
+		for (WorkUnit childWorkUnit : childWorkUnits)
+		{
+			childWorkUnit.seal();
+		}
+	}
+
+	public Set<Long> getVariableScopeIds()
+	{
+		Set<Long> scopeIds = variableScopeIds;
+
+		if (scopeIds != null)
+		{
+			return scopeIds;
+		}
+
+		scopeIds = new HashSet<Long>();
+
+		if (!collectVariableScopeIds(scopeIds))
+		{
+			return null;
+		}
+
+		scopeIds = Collections.unmodifiableSet(scopeIds);
+
+		if (variableScopes != null)
+		{
+			variableScopeIds = scopeIds;
+		}
+
+		return scopeIds;
+	}
+
+	private boolean collectVariableScopeIds(Set<Long> scopeIds)
+	{
+		if (!isChildWorkUnitsLoaded())
+		{
+			return false;
+		}
+
+		if (variables != null && !variables.isEmpty())
+		{
+			scopeIds.add(id);
+		}
+
+		for (WorkUnit childWorkUnit : childWorkUnits)
+		{
+			if (!childWorkUnit.collectVariableScopeIds(scopeIds))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void loadChildWorkUnits()
+	{
+		if (childWorkUnitLoader == null) return;
+
+		synchronized (this)
+		{
+			if (childWorkUnitLoader == null || loadingChildWorkUnits || targetContainer == null) return;
+
+			loadingChildWorkUnits = true;
+
+			try
+			{
+				List<WorkUnit> loadedWorkUnits = new ArrayList<WorkUnit>(childWorkUnits);
+
+				for (WorkUnit childWorkUnit : childWorkUnitLoader.loadChildWorkUnits(this)) linkChildWorkUnit(loadedWorkUnits, childWorkUnit);
+
+				childWorkUnits = Collections.unmodifiableList(loadedWorkUnits);
+				childWorkUnitLoader = null;
+
+				if (workflow != null)
+				{
+					workflow.childWorkUnitsLoaded();
+				}
+			}
+			finally
+			{
+				loadingChildWorkUnits = false;
+			}
 		}
-
-		childWorkUnit.setTargetContainer(getTargetContainer().addChildWorkUnit(childWorkUnit));
-
-		childWorkUnit.getTargetContainer().setId(childWorkUnit.getId());
 	}
 
-	public void execute()
+	public ExecutionOutcome execute()
 	{
 		beforeExecution();
 
+		ExecutionOutcome outcome;
+
 		if (isFlowController())
 		{
-			getFlowController().controlFlow();
+			outcome = getFlowController().controlFlow();
 		}
 
 		else if (isCommand())
 		{
-			logger.debug("Executing: Command (" + getCommand().getSymbolicName() + "), id = " +  getBreadcrumbId() + " (" + getTargetContainer().getId() + ")");
-
-			if (StringUtils.isNotBlank(getCommand().getAssignTo()) && lookUpVariableScopeWorkUnit(getCommand().getAssignTo()) != null)
-			{
-				WorkUnit variableScopeWorkUnit = lookUpVariableScopeWorkUnit(getCommand().getAssignTo());
-
-				variableScopeWorkUnit.getVariables().put(getCommand().getAssignTo(),  getCommand().execute().getData());
-
-				if (getWorkflow().getDirtyVariables().get(variableScopeWorkUnit) == null)
-				{
-					getWorkflow().getDirtyVariables().put(variableScopeWorkUnit, new HashSet<String>());
-				}
-				getWorkflow().getDirtyVariables().get(variableScopeWorkUnit).add(getCommand().getAssignTo());
-
-				logger.debug("Assigning value to variable! workunit: " + variableScopeWorkUnit.getBreadcrumbId() + ", variable: " + getCommand().getAssignTo() + ", value: " + variableScopeWorkUnit.getVariables().get(getCommand().getAssignTo()));
-			}
-			else
-			{
-				getCommand().execute();
-
-				logger.debug("Command: done (" + getCommand().getSymbolicName() + ")");
-			}
+			outcome = executeCommand();
 		}		
 
 		else
 		{
-			if (getWorkflow().getExecutionSuspensionPoint() != null)
+			outcome = executeChildWorkUnits();
+		}
+
+		if (outcome == ExecutionOutcome.CONTINUE)
+		{
+			outcome = completeExecution();
+		}
+
+		afterExecution();
+
+		return outcome;
+	}
+
+	private ExecutionOutcome executeChildWorkUnits()
+	{
+		List<WorkUnit> childWorkUnits = getChildWorkUnits();
+
+		int first = 0;
+
+		if (getWorkflow().getExecutionSuspensionPoint() != null)
+		{
+			if (!getWorkflow().getExecutionSuspensionPoint().equals(getBreadcrumbId()))
 			{
-				if (!getWorkflow().getExecutionSuspensionPoint().equals(getBreadcrumbId()))
-				{
-					logger.debug("Traversing while looking up suspension point: Container Block, id = " + getBreadcrumbId() + " (" + getId() + ")");
-
-					for (WorkUnit workUnit :
-							getChildWorkUnits().subList(
-								Integer.parseInt(Splitter.on('.').splitToList(getWorkflow().getExecutionSuspensionPoint()).get(CharMatcher.is('.').countIn(getBreadcrumbId()) + 1)) - 1,
-								getChildWorkUnits().size())
-							)
-					{
-						workUnit.execute();
-					}
-				}
-				else
-				{
-					logger.debug("Reached suspension point: " + getBreadcrumbId() + " - Starting Execution...");
-				}
-			}
+				logger.debug("Traversing while looking up suspension point: Container Block, id = " + getBreadcrumbId() + " (" + getId() + ")");
 
+				first = Integer.parseInt(Splitter.on('.').splitToList(getWorkflow().getExecutionSuspensionPoint()).get(CharMatcher.is('.').countIn(getBreadcrumbId()) + 1)) - 1;
+			}
 			else
 			{
-				logger.debug("Executing: Container Block, id = " + getBreadcrumbId() + " (" + getId() + ")");
+				logger.debug("Reached suspension point: " + getBreadcrumbId() + " - Starting Execution...");
 
-				for (WorkUnit workUnit : getChildWorkUnits())
-				{
-					workUnit.execute();
-				}
+				return ExecutionOutcome.CONTINUE;
 			}
 		}
 
+		else
+		{
+			logger.debug("Executing: Container Block, id = " + getBreadcrumbId() + " (" + getId() + ")");
+		}
+
+		for (int i=first; i<childWorkUnits.size(); i++)
+		{
+			ExecutionOutcome outcome = childWorkUnits.get(i).execute();
+
+			if (outcome != ExecutionOutcome.CONTINUE)
+			{
+				return outcome;
+			}
+		}
+
+		return ExecutionOutcome.CONTINUE;
+	}
+
+	public ExecutionOutcome executeCommand()
+	{
+		logger.debug("Executing: Command (" + getCommand().getSymbolicName() + "), id = " +  getBreadcrumbId() + " (" + getTargetContainer().getId() + ")");
+
+		WorkUnit variableScopeWorkUnit = (StringUtils.isNotBlank(getCommand().getAssignTo()) ? lookUpVariableScopeWorkUnit(getCommand().getAssignTo()) : null);
+
+		if (variableScopeWorkUnit != null)
+		{
+			CommandResult<?> result = getCommand().execute();
+
+			if (getWorkflow().getExecutionTerminationPoint() != null)
+			{
+				return ExecutionOutcome.TERMINATE;
+			}
+
+			variableScopeWorkUnit.getVariables().put(getCommand().getAssignTo(), result.getData());
+
+			if (getWorkflow().getDirtyVariables().get(variableScopeWorkUnit) == null)
+			{
+				getWorkflow().getDirtyVariables().put(variableScopeWorkUnit, new HashSet<String>());
+			}
+			getWorkflow().getDirtyVariables().get(variableScopeWorkUnit).add(getCommand().getAssignTo());
+
+			logger.debug("Assigning value to variable! workunit: " + variableScopeWorkUnit.getBreadcrumbId() + ", variable: " + getCommand().getAssignTo() + ", value: " + variableScopeWorkUnit.getVariables().get(getCommand().getAssignTo()));
+		}
+		else
+		{
+			getCommand().execute();
+
+			if (getWorkflow().getExecutionTerminationPoint() != null)
+			{
+				return ExecutionOutcome.TERMINATE;
+			}
+
+			logger.debug("Command: done (" + getCommand().getSymbolicName() + ")");
+		}
+
+		return ExecutionOutcome.CONTINUE;
+	}
+
+	public ExecutionOutcome completeExecution()
+	{
 		if (isReturnAtCompletion())
 		{
 			if (getWorkflow().getExecutionSuspensionPoint() != null && getWorkflow().getExecutionSuspensionPoint().equals(getBreadcrumbId()))
@@ -231,11 +452,11 @@ public class WorkUnit
 			}
 			else if (getWorkflow().getExecutionSuspensionPoint() == null)
 			{
-				doReturn();
+				return doReturn();
 			}
 		}
-
-		afterExecution();
+
+		return ExecutionOutcome.CONTINUE;
 	}
 
 	private void beforeExecution()
@@ -246,18 +467,18 @@ public class WorkUnit
 	{
 	}
 
-	public void doReturn()
+	public ExecutionOutcome doReturn()
 	{
 		logger.debug("Suspending on workunit: " + getBreadcrumbId());
 
 		getWorkflow().setExecutionSuspensionPoint(getBreadcrumbId());
 
-		throw new WorkflowExecutionSuspensionException(getBreadcrumbId());
+		return ExecutionOutcome.SUSPEND;
 	}
 
 	public Object lookUpVariableValue(String variable)
 	{
-		if (variable.matches("^\'(\\w)*\'$")) 
+		if (literalPattern.matcher(variable).matches())
 		{
 			return CharMatcher.is('\'').removeFrom(variable);
 		}
@@ -277,9 +498,16 @@ public class WorkUnit
 	{
 		if (variable != null)
 		{
+			WorkUnit resolvedWorkUnit = (variableScopes != null ? variableScopes.get(variable) : null);
+
+			if (resolvedWorkUnit != null)
+			{
+				return resolvedWorkUnit;
+			}
+
 			for (WorkUnit worUnit = this; worUnit != null; worUnit = worUnit.getParentWorkUnit())
 			{
-				if (worUnit.getVariables().containsKey(variable))
+				if (worUnit.hasVariable(variable))
 				{
 					return worUnit;
 				}
@@ -312,6 +540,8 @@ public class WorkUnit
 
 	public TargetContainerElement<WorkUnit> getTargetContainer()
 	{
+		loadChildWorkUnits();
+
 		return targetContainer;
 	}
 
@@ -322,13 +552,30 @@ public class WorkUnit
 
 	public Workflow getWorkflow()
 	{
-		return workflow;
+		Workflow boundWorkflow = (workflow != null ? workflow.getBoundInstance() : null);
+
+		if (boundWorkflow == null && workflow != null && workflow.isSealed())
+		{
+			throw new WorkflowException("getWorkflow error: no workflow instance is bound to a shared workflow definition.");
+		}
+
+		return boundWorkflow != null ? boundWorkflow : workflow;
 	}
 
 	public void setWorkflow(Workflow workflow)
 	{
 		this.workflow = workflow;
 	}
+
+	public boolean isChildWorkUnitsLoaded()
+	{
+		return childWorkUnitLoader == null;
+	}
+
+	public void setChildWorkUnitLoader(ChildWorkUnitLoader childWorkUnitLoader)
+	{
+		this.childWorkUnitLoader = childWorkUnitLoader;
+	}
 
 	public long getId()
 	{
@@ -341,6 +588,20 @@ public class WorkUnit
 	}
 
 	public Map<String, Object> getVariables()
+	{
+		Workflow boundWorkflow = (workflow != null ? workflow.getBoundInstance() : null);
+
+		return boundWorkflow != null ? boundWorkflow.getVariables(this) : Collections.unmodifiableMap(getDeclaredVariables());
+	}
+
+	public boolean hasVariable(String variable)
+	{
+		Workflow boundWorkflow = (workflow != null ? workflow.getBoundInstance() : null);
+
+		return boundWorkflow != null ? boundWorkflow.getState().containsVariable(this, variable) : getDeclaredVariables().containsKey(variable);
+	}
+
+	public Map<String, Object> getDeclaredVariables()
 	{
 		if (variables == null)
 		{
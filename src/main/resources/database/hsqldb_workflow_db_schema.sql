@@ -19,6 +19,8 @@
 SET SCHEMA greenflow;
 
 SET INITIAL SCHEMA greenflow;
+
+DROP PROCEDURE IF EXISTS claim_transaction;
 
 DROP TABLE IF EXISTS execution_assigned_variable;
 
@@ -32,6 +34,8 @@ DROP TABLE IF EXISTS configuration_predicate;
 DROP TABLE IF EXISTS configuration_treepath;
 DROP TABLE IF EXISTS configuration_workunit;
 DROP TABLE IF EXISTS configuration_workflow;
+
+DROP TABLE IF EXISTS id_sequence;
 
 DROP TABLE IF EXISTS dual;
 
@@ -41,6 +45,8 @@ DROP SEQUENCE IF EXISTS predicate_sequence;
 CREATE TABLE IF NOT EXISTS Configuration_Workflow (
 id BIGINT GENERATED BY DEFAULT AS IDENTITY(START WITH 1, INCREMENT BY 1) PRIMARY KEY NOT NULL,
 name VARCHAR(64) NOT NULL,
+version INT DEFAULT 1 NOT NULL,
+snapshot BLOB,
 description VARCHAR(64),
 creation_date DATETIME, 
 creator VARCHAR(64),
@@ -50,6 +56,7 @@ UNIQUE (name)
 CREATE TABLE IF NOT EXISTS Configuration_WorkUnit (
 id BIGINT GENERATED BY DEFAULT AS IDENTITY(START WITH 1, INCREMENT BY 1) PRIMARY KEY NOT NULL,
 workflow_id BIGINT NOT NULL,
+ordinal INT,
 discriminator TINYINT NOT NULL, 
 type SMALLINT NOT NULL, 
 "return" boolean, 
@@ -108,6 +115,10 @@ CREATE TABLE IF NOT EXISTS Execution_Conversation(
 id BIGINT GENERATED BY DEFAULT AS IDENTITY(START WITH 1, INCREMENT BY 1) PRIMARY KEY NOT NULL,
 workflow_id BIGINT NOT NULL,
 locked_transaction_ordinal INT,
+last_transaction_ordinal INT DEFAULT 0 NOT NULL,
+suspension_point VARCHAR(512),
+lease_expiry TIMESTAMP,
+fencing_token BIGINT DEFAULT 0 NOT NULL,
 
 FOREIGN KEY (workflow_id) REFERENCES Configuration_Workflow(id)
 );
@@ -127,37 +138,39 @@ CREATE TABLE IF NOT EXISTS Execution_Assigned_Variable(
 conversation_id BIGINT NOT NULL,
 workunit_id BIGINT NOT NULL,
 name VARCHAR(64),
-value VARCHAR(512),
+value_type SMALLINT NOT NULL,
+value VARBINARY(65536),
 PRIMARY KEY(conversation_id, workunit_id, name),
 FOREIGN KEY (conversation_id) REFERENCES Execution_Conversation(id),
 FOREIGN KEY (workunit_id) REFERENCES Configuration_WorkUnit(id)
 );
 
-CREATE TABLE IF NOT EXISTS dual(
-dummy BIGINT NULL
+CREATE TABLE IF NOT EXISTS Id_Sequence(
+name VARCHAR(64) PRIMARY KEY NOT NULL,
+next_value BIGINT NOT NULL
 );
 
-CREATE SEQUENCE IF NOT EXISTS predicate_sequence START WITH 1 INCREMENT BY 1;
-
-CREATE PROCEDURE nextvals (OUT current_value BIGINT, IN bump_size INTEGER)
+INSERT INTO Id_Sequence (name, next_value) VALUES ('workflow', 1), ('workunit', 1), ('predicate', 1), ('conversation', 1);
 
+CREATE PROCEDURE claim_transaction (IN claimed_conversation_id BIGINT, IN claim_time TIMESTAMP, IN lease_expiry_time TIMESTAMP, OUT claimed INTEGER)
+
   MODIFIES SQL DATA
+  DYNAMIC RESULT SETS 1
   BEGIN ATOMIC
-
-    DECLARE i INTEGER;
-    IF bump_size IS NULL OR bump_size < 1 THEN SET i = 0; ELSE SET i = bump_size - 1; End IF;
-
-    SET current_value = NEXT VALUE FOR predicate_sequence;
-
-    loop_label: WHILE i > 0 DO
-
-      INSERT INTO dual VALUES NEXT VALUE FOR predicate_sequence;
-
-      SET i = i - 1;
-
-    END WHILE loop_label;
-
+
+    DECLARE claimed_state CURSOR WITH RETURN FOR
+      SELECT last_transaction_ordinal, suspension_point, fencing_token
+      FROM Execution_Conversation
+      WHERE id = claimed_conversation_id;
+
+    UPDATE Execution_Conversation SET locked_transaction_ordinal = last_transaction_ordinal + 1, lease_expiry = lease_expiry_time, fencing_token = fencing_token + 1
+      WHERE id = claimed_conversation_id AND (locked_transaction_ordinal IS NULL OR lease_expiry < claim_time) AND (last_transaction_ordinal = 0 OR suspension_point IS NOT NULL);
+
+    GET DIAGNOSTICS claimed = ROW_COUNT;
+
+    OPEN claimed_state;
+
   END;
-
+
 ++
 @delimiter ;++
\ No newline at end of file
@@ -30,10 +30,20 @@ DROP TABLE IF EXISTS `configuration_workunit`;
 DROP TABLE IF EXISTS `configuration_workflow`;
 
 DROP TABLE IF EXISTS `sequence`;
+DROP TABLE IF EXISTS `id_sequence`;
+
+CREATE TABLE IF NOT EXISTS Id_Sequence(
+name VARCHAR(64) PRIMARY KEY,
+next_value BIGINT UNSIGNED NOT NULL
+);
+
+INSERT INTO Id_Sequence (name, next_value) VALUES ('workflow', 1), ('workunit', 1), ('predicate', 1), ('conversation', 1);
 
 CREATE TABLE IF NOT EXISTS Configuration_Workflow(
 id SERIAL PRIMARY KEY,
 name VARCHAR(64) NOT NULL,
+version INT UNSIGNED NOT NULL DEFAULT 1,
+snapshot MEDIUMBLOB,
 description VARCHAR(64),
 creation_date DATETIME, 
 creator VARCHAR(64),
@@ -43,6 +53,7 @@ UNIQUE (name)
 CREATE TABLE IF NOT EXISTS Configuration_WorkUnit(
 id SERIAL PRIMARY KEY,
 workflow_id BIGINT UNSIGNED NOT NULL,
+ordinal INT UNSIGNED,
 discriminator TINYINT UNSIGNED NOT NULL, 
 type SMALLINT NOT NULL, 
 `return` boolean, 
@@ -91,9 +91,9 @@ public class ConfigurationWorkflowTest
 
 		WorkUnit rootWorkUnit = workflow.getRootWorkUnit();
 
-		rootWorkUnit.getVariables().put("x", 100);
-		rootWorkUnit.getVariables().put("y", 200);
-		rootWorkUnit.getVariables().put("z", 300);
+		rootWorkUnit.getDeclaredVariables().put("x", 100);
+		rootWorkUnit.getDeclaredVariables().put("y", 200);
+		rootWorkUnit.getDeclaredVariables().put("z", 300);
 
 		rootWorkUnit.setReturnAtCompletion(true);
 		rootWorkUnit.setPersistAfterReturn(false);
@@ -112,9 +112,9 @@ public class ConfigurationWorkflowTest
 		flowController_01.setPredicate(predicate_01);
 		WorkUnit workUnit_01 = new WorkUnit(flowController_01);
 
-		workUnit_01.getVariables().put("x", 100);
-		workUnit_01.getVariables().put("y", 200);
-		workUnit_01.getVariables().put("z", 300);
+		workUnit_01.getDeclaredVariables().put("x", 100);
+		workUnit_01.getDeclaredVariables().put("y", 200);
+		workUnit_01.getDeclaredVariables().put("z", 300);
 
 		workUnit_01.setReturnAtCompletion(true);
 		workUnit_01.setPersistAfterReturn(false);
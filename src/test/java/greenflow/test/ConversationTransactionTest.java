@@ -0,0 +1,399 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import greenflow.command.Command;
+import greenflow.conversation.Conversation;
+import greenflow.conversation.ConversationFactory;
+import greenflow.conversation.Transaction;
+import greenflow.conversation.TransactionData;
+import greenflow.conversation.TransactionGroupCommitter;
+import greenflow.conversation.TransactionResult;
+import greenflow.exception.ConversationException;
+import greenflow.flowcontroller.FlowController;
+import greenflow.flowcontroller.IfFlowController;
+import greenflow.flowcontroller.WhileFlowController;
+import greenflow.persistence.WorkflowConfigurationDao;
+import greenflow.predicate.Predicate;
+import greenflow.test.command.ConsolePrinterCommand;
+import greenflow.test.command.FailingCommand;
+import greenflow.test.command.IntegerIncrementerCommand;
+import greenflow.test.predicate.IntegerLessThanPredicate;
+import greenflow.utilities.DefaultServiceLocator;
+import greenflow.utilities.GlobalWorkflowSettingsUtilities;
+import greenflow.workflow.Workflow;
+import greenflow.workunit.WorkUnit;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({"classpath:spring-module.xml"})
+public class ConversationTransactionTest
+{
+	private Workflow workflow;
+
+	@Autowired
+	private WorkflowConfigurationDao workUnitConfigurationDao;
+
+	@Autowired
+	private ConversationFactory conversationFactory;
+
+	@Autowired
+	private TransactionGroupCommitter transactionGroupCommitter;
+
+	@Autowired
+	private GlobalWorkflowSettingsUtilities globalWorkflowSettings;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DefaultServiceLocator serviceLocator;
+
+	@Before
+	public void setUp()
+	{
+		workflow = new Workflow(null);
+
+		WorkUnit rootWorkUnit = workflow.getRootWorkUnit();
+
+		rootWorkUnit.getDeclaredVariables().put("counter", 0);
+
+		rootWorkUnit.setReturnAtCompletion(true);
+		rootWorkUnit.getReturnedVariables().add("counter");
+
+		Command<Object> command_01 = serviceLocator.getInstance(FailingCommand.class);
+		rootWorkUnit.addChildWorkUnit(new WorkUnit(command_01));
+
+		Command<Integer> command_02 = serviceLocator.getInstance(IntegerIncrementerCommand.class);
+		command_02.getParameters().add("counter");
+		command_02.setAssignTo("counter");
+		rootWorkUnit.addChildWorkUnit(new WorkUnit(command_02));
+	}
+
+	@Test
+	public void Transaction_CommandThrowingWithinTransaction_ReleasingConversationForNextTransaction()
+	{
+		executeAfterFailedTransaction();
+	}
+
+	@Test
+	public void Transaction_CommandThrowingWithinHotTierTransaction_ReleasingConversationForNextTransaction()
+	{
+		boolean clusteringEnabled = globalWorkflowSettings.isClusteringEnabled();
+		boolean executionStateHotTierEnabled = globalWorkflowSettings.isExecutionStateHotTierEnabled();
+
+		globalWorkflowSettings.setClusteringEnabled(false);
+		globalWorkflowSettings.setExecutionStateHotTierEnabled(true);
+
+		try
+		{
+			executeAfterFailedTransaction();
+		}
+		finally
+		{
+			globalWorkflowSettings.setClusteringEnabled(clusteringEnabled);
+			globalWorkflowSettings.setExecutionStateHotTierEnabled(executionStateHotTierEnabled);
+		}
+	}
+
+	@Test
+	public void Transaction_ConversationClaimedByAnotherNodeDuringTransaction_FailingWithStaleFencingToken()
+	{
+		boolean clusteringEnabled = globalWorkflowSettings.isClusteringEnabled();
+		boolean executionStateHotTierEnabled = globalWorkflowSettings.isExecutionStateHotTierEnabled();
+
+		globalWorkflowSettings.setClusteringEnabled(true);
+		globalWorkflowSettings.setExecutionStateHotTierEnabled(false);
+
+		try
+		{
+			long workflowId = workUnitConfigurationDao.saveWorkflow(workflow);
+
+			Conversation conversation = conversationFactory.startConversation(workflowId);
+
+			Transaction transaction = conversation.startTransaction(new TransactionData());
+
+			assertNotNull(transaction);
+
+			jdbcTemplate.update("update Execution_Conversation set fencing_token = fencing_token + 1, lease_expiry = ? where id = ?", new Timestamp(System.currentTimeMillis() + globalWorkflowSettings.getConversationLeaseDuration()), conversation.getId());
+
+			try
+			{
+				transaction.execute();
+
+				fail("Transaction with a stale fencing token was expected to fail");
+			}
+			catch (ConversationException e)
+			{
+				System.out.println("Transaction failed: " + e.getMessage());
+			}
+
+			assertEquals(0, (int) jdbcTemplate.queryForObject("select last_transaction_ordinal from Execution_Conversation where id = ?", Integer.class, conversation.getId()));
+			assertNull(jdbcTemplate.queryForObject("select suspension_point from Execution_Conversation where id = ?", String.class, conversation.getId()));
+		}
+		finally
+		{
+			globalWorkflowSettings.setClusteringEnabled(clusteringEnabled);
+			globalWorkflowSettings.setExecutionStateHotTierEnabled(executionStateHotTierEnabled);
+		}
+	}
+
+	@Test
+	public void TransactionGroupCommitter_GroupWithStaleTransaction_CommittingOnlyTheOtherTransactions() throws InterruptedException
+	{
+		boolean clusteringEnabled = globalWorkflowSettings.isClusteringEnabled();
+		long groupCommitWindow = globalWorkflowSettings.getGroupCommitWindow();
+		int groupCommitSize = globalWorkflowSettings.getGroupCommitSize();
+
+		globalWorkflowSettings.setClusteringEnabled(false);
+		globalWorkflowSettings.setGroupCommitWindow(1000);
+		globalWorkflowSettings.setGroupCommitSize(2);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try
+		{
+			long workflowId = workUnitConfigurationDao.saveWorkflow(workflow);
+
+			final long conversationId_01 = conversationFactory.startConversation(workflowId).getId();
+			final long conversationId_02 = conversationFactory.startConversation(workflowId).getId();
+
+			Future<?> commit_01 = executor.submit(new Runnable() {
+					public void run() {
+						transactionGroupCommitter.commit(Collections.singletonList(new Object[] {conversationId_01, 1, "1"}), new ArrayList<Object[]>(), new ArrayList<Object[]>(), new Object[] {1, "1", conversationId_01, 0});
+					}
+				});
+
+			Future<?> commit_02 = executor.submit(new Runnable() {
+					public void run() {
+						transactionGroupCommitter.commit(Collections.singletonList(new Object[] {conversationId_02, 2, "1"}), new ArrayList<Object[]>(), new ArrayList<Object[]>(), new Object[] {2, "1", conversationId_02, 1});
+					}
+				});
+
+			try
+			{
+				commit_01.get();
+			}
+			catch (ExecutionException e)
+			{
+				fail("Transaction of conversation id: " + conversationId_01 + " was expected to commit: " + e.getCause());
+			}
+
+			try
+			{
+				commit_02.get();
+
+				fail("Stale transaction of conversation id: " + conversationId_02 + " was expected to fail");
+			}
+			catch (ExecutionException e)
+			{
+				assertTrue(e.getCause() instanceof ConversationException);
+			}
+
+			assertEquals(1, (int) jdbcTemplate.queryForObject("select last_transaction_ordinal from Execution_Conversation where id = ?", Integer.class, conversationId_01));
+			assertEquals(1, (int) jdbcTemplate.queryForObject("select count(*) from Execution_Transaction where conversation_id = ?", Integer.class, conversationId_01));
+
+			assertEquals(0, (int) jdbcTemplate.queryForObject("select last_transaction_ordinal from Execution_Conversation where id = ?", Integer.class, conversationId_02));
+			assertEquals(0, (int) jdbcTemplate.queryForObject("select count(*) from Execution_Transaction where conversation_id = ?", Integer.class, conversationId_02));
+		}
+		finally
+		{
+			executor.shutdownNow();
+
+			globalWorkflowSettings.setClusteringEnabled(clusteringEnabled);
+			globalWorkflowSettings.setGroupCommitWindow(groupCommitWindow);
+			globalWorkflowSettings.setGroupCommitSize(groupCommitSize);
+		}
+	}
+
+	@Test
+	public void Transaction_SuspendingOutsideCompletedScope_DeletingAssignedVariablesOfPrunedScope()
+	{
+		Workflow scopedWorkflow = new Workflow(null);
+
+		Predicate predicate_01 = serviceLocator.getInstance(IntegerLessThanPredicate.class);
+		predicate_01.getParameters().add("'0'");
+		predicate_01.getParameters().add("'1'");
+		FlowController flowController_01 = serviceLocator.getInstance(IfFlowController.class);
+		flowController_01.setPredicate(predicate_01);
+		WorkUnit workUnit_01 = new WorkUnit(flowController_01);
+
+		workUnit_01.getDeclaredVariables().put("counter", 0);
+
+		workUnit_01.setReturnAtCompletion(true);
+		workUnit_01.getReturnedVariables().add("counter");
+
+		scopedWorkflow.getRootWorkUnit().addChildWorkUnit(workUnit_01);
+
+		Command<Integer> command_02 = serviceLocator.getInstance(IntegerIncrementerCommand.class);
+		command_02.getParameters().add("counter");
+		command_02.setAssignTo("counter");
+		workUnit_01.addChildWorkUnit(new WorkUnit(command_02));
+
+		Predicate predicate_03 = serviceLocator.getInstance(IntegerLessThanPredicate.class);
+		predicate_03.getParameters().add("'0'");
+		predicate_03.getParameters().add("'1'");
+		FlowController flowController_03 = serviceLocator.getInstance(IfFlowController.class);
+		flowController_03.setPredicate(predicate_03);
+		WorkUnit workUnit_03 = new WorkUnit(flowController_03);
+
+		workUnit_03.setReturnAtCompletion(true);
+
+		scopedWorkflow.getRootWorkUnit().addChildWorkUnit(workUnit_03);
+
+		Command<Object> command_04 = serviceLocator.getInstance(ConsolePrinterCommand.class);
+		command_04.getParameters().add("'pruned'");
+		workUnit_03.addChildWorkUnit(new WorkUnit(command_04));
+
+		long workflowId = workUnitConfigurationDao.saveWorkflow(scopedWorkflow);
+
+		Conversation conversation = conversationFactory.startConversation(workflowId);
+
+		conversation.startTransaction(new TransactionData()).execute();
+
+		assertEquals(1, (int) jdbcTemplate.queryForObject("select count(*) from Execution_Assigned_Variable where conversation_id = ? and workunit_id = ?", Integer.class, conversation.getId(), workUnit_01.getId()));
+
+		conversation.startTransaction(new TransactionData()).execute();
+
+		assertEquals(globalWorkflowSettings.isExecutionStatePruningEnabled() ? 0 : 1, (int) jdbcTemplate.queryForObject("select count(*) from Execution_Assigned_Variable where conversation_id = ? and workunit_id = ?", Integer.class, conversation.getId(), workUnit_01.getId()));
+	}
+
+	@Test
+	public void Transaction_ConcurrentTransactionsOnOneConversation_ReturningEachCounterValueOnce() throws InterruptedException, ExecutionException
+	{
+		Workflow loopWorkflow = new Workflow(null);
+
+		loopWorkflow.getRootWorkUnit().getDeclaredVariables().put("counter", 0);
+
+		Predicate predicate_01 = serviceLocator.getInstance(IntegerLessThanPredicate.class);
+		predicate_01.getParameters().add("counter");
+		predicate_01.getParameters().add("'1000'");
+		FlowController flowController_01 = serviceLocator.getInstance(WhileFlowController.class);
+		flowController_01.setPredicate(predicate_01);
+		WorkUnit workUnit_01 = new WorkUnit(flowController_01);
+
+		workUnit_01.setReturnAtCompletion(true);
+		workUnit_01.setPersistAfterReturn(true);
+		workUnit_01.getReturnedVariables().add("counter");
+
+		loopWorkflow.getRootWorkUnit().addChildWorkUnit(workUnit_01);
+
+		Command<Integer> command_02 = serviceLocator.getInstance(IntegerIncrementerCommand.class);
+		command_02.getParameters().add("counter");
+		command_02.setAssignTo("counter");
+		workUnit_01.addChildWorkUnit(new WorkUnit(command_02));
+
+		long workflowId = workUnitConfigurationDao.saveWorkflow(loopWorkflow);
+
+		final Conversation conversation = conversationFactory.startConversation(workflowId);
+
+		final int transactionsPerThread = 50;
+
+		final List<Integer> counters = Collections.synchronizedList(new ArrayList<Integer>());
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try
+		{
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+
+			for (int i=0; i<2; i++)
+			{
+				futures.add(executor.submit(new Runnable() {
+						public void run() {
+							for (int j=0; j<transactionsPerThread; j++)
+							{
+								List<TransactionResult<?>> transactionResults = conversation.startTransaction(new TransactionData()).execute();
+
+								counters.add(Integer.valueOf(transactionResults.get(0).getData().toString()));
+							}
+						}
+					}));
+			}
+
+			for (Future<?> future : futures) future.get();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		Collections.sort(counters);
+
+		for (int i=0; i<2*transactionsPerThread; i++)
+		{
+			assertEquals(i + 1, (int) counters.get(i));
+		}
+	}
+
+	private void executeAfterFailedTransaction()
+	{
+		long workflowId = workUnitConfigurationDao.saveWorkflow(workflow);
+
+		Conversation conversation = conversationFactory.startConversation(workflowId);
+
+		TransactionData transactionData = new TransactionData();
+		transactionData.setTransactionData(-1);
+
+		Transaction transaction = conversation.startTransaction(transactionData);
+
+		try
+		{
+			transaction.execute();
+
+			fail("Transaction was expected to fail");
+		}
+		catch (IllegalStateException e)
+		{
+			System.out.println("Transaction failed: " + e.getMessage());
+		}
+
+		transactionData.setTransactionData(0);
+
+		transaction = conversation.startTransaction(transactionData);
+
+		assertNotNull(transaction);
+		assertEquals(1, transaction.getTransactionOrdinal());
+
+		List<TransactionResult<?>> transactionResults = transaction.execute();
+
+		assertEquals(1, transactionResults.size());
+		assertEquals("1", transactionResults.get(0).getData().toString());
+	}
+}
\ No newline at end of file
@@ -16,6 +16,10 @@
 
 package greenflow.test;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.AfterClass;
@@ -33,7 +37,9 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import greenflow.command.Command;
 import greenflow.command.concrete.ValueAssignerCommand;
 import greenflow.conversation.*;
+import greenflow.flowcontroller.ElseFlowController;
 import greenflow.flowcontroller.FlowController;
+import greenflow.flowcontroller.IfFlowController;
 import greenflow.flowcontroller.WhileFlowController;
 import greenflow.persistence.WorkflowConfigurationDao;
 import greenflow.predicate.Predicate;
@@ -56,6 +62,7 @@ public class FlowControllerTest
 
 	private Workflow workflow1;
 	private Workflow workflow2;
+	private Workflow workflow3;
 
 	@Autowired
 	private WorkflowXmlUtilities workflowXmlUtilities;
@@ -93,7 +100,7 @@ public class FlowControllerTest
 
 			WorkUnit rootWorkUnit = workflow.getRootWorkUnit();
 
-			rootWorkUnit.getVariables().put("counter", 0);
+			rootWorkUnit.getDeclaredVariables().put("counter", 0);
 
 			rootWorkUnit.setReturnAtCompletion(true);
 			rootWorkUnit.getReturnedVariables().add("counter");
@@ -131,7 +138,7 @@ public class FlowControllerTest
 
 			WorkUnit rootWorkUnit = workflow.getRootWorkUnit();
 
-			rootWorkUnit.getVariables().put("counter_i", 0);
+			rootWorkUnit.getDeclaredVariables().put("counter_i", 0);
 
 			rootWorkUnit.setReturnAtCompletion(true);
 			rootWorkUnit.getReturnedVariables().add("counter_i");
@@ -143,7 +150,7 @@ public class FlowControllerTest
 			flowController_01.setPredicate(predicate_01);
 			WorkUnit workUnit_01 = new WorkUnit(flowController_01);
 
-			workUnit_01.getVariables().put("counter_j", 0);
+			workUnit_01.getDeclaredVariables().put("counter_j", 0);
 
 			rootWorkUnit.addChildWorkUnit(workUnit_01);
 
@@ -194,6 +201,80 @@ public class FlowControllerTest
 
 			workflow2 = workflow;
     	}
+
+    	{
+			workflow = new Workflow(null);
+
+			WorkUnit rootWorkUnit = workflow.getRootWorkUnit();
+
+			rootWorkUnit.getDeclaredVariables().put("counter_i", 0);
+
+			Predicate predicate_01 = serviceLocator.getInstance(IntegerLessThanPredicate.class);
+			predicate_01.getParameters().add("counter_i");
+			predicate_01.getParameters().add("'2'");
+			FlowController flowController_01 = serviceLocator.getInstance(WhileFlowController.class);
+			flowController_01.setPredicate(predicate_01);
+			WorkUnit workUnit_01 = new WorkUnit(flowController_01);
+
+			workUnit_01.getDeclaredVariables().put("counter_j", 0);
+
+			rootWorkUnit.addChildWorkUnit(workUnit_01);
+
+			Command<Integer> command_02 = serviceLocator.getInstance(IntegerIncrementerCommand.class);
+			command_02.getParameters().add("counter_i");
+			command_02.setAssignTo("counter_i");
+			workUnit_01.addChildWorkUnit(new WorkUnit(command_02));
+
+			Command<Object> command_03 = serviceLocator.getInstance(ValueAssignerCommand.class);
+			command_03.getParameters().add("counter_j");
+			command_03.getParameters().add("'0'");
+			workUnit_01.addChildWorkUnit(new WorkUnit(command_03));
+
+			Predicate predicate_04 = serviceLocator.getInstance(IntegerLessThanPredicate.class);
+			predicate_04.getParameters().add("counter_j");
+			predicate_04.getParameters().add("'3'");
+			FlowController flowController_04 = serviceLocator.getInstance(WhileFlowController.class);
+			flowController_04.setPredicate(predicate_04);
+			WorkUnit workUnit_04 = new WorkUnit(flowController_04);
+			workUnit_01.addChildWorkUnit(workUnit_04);
+
+			Command<Integer> command_05 = serviceLocator.getInstance(IntegerIncrementerCommand.class);
+			command_05.getParameters().add("counter_j");
+			command_05.setAssignTo("counter_j");
+			workUnit_04.addChildWorkUnit(new WorkUnit(command_05));
+
+			Predicate predicate_06 = serviceLocator.getInstance(IntegerLessThanPredicate.class);
+			predicate_06.getParameters().add("counter_j");
+			predicate_06.getParameters().add("'2'");
+			FlowController flowController_06 = serviceLocator.getInstance(IfFlowController.class);
+			flowController_06.setPredicate(predicate_06);
+			WorkUnit workUnit_06 = new WorkUnit(flowController_06);
+
+			workUnit_06.setReturnAtCompletion(true);
+			workUnit_06.getReturnedVariables().add("counter_i");
+			workUnit_06.getReturnedVariables().add("counter_j");
+
+			workUnit_04.addChildWorkUnit(workUnit_06);
+
+			Command<Object> command_07 = serviceLocator.getInstance(ConsolePrinterCommand.class);
+			command_07.getParameters().add("counter_j");
+			workUnit_06.addChildWorkUnit(new WorkUnit(command_07));
+
+			FlowController flowController_08 = serviceLocator.getInstance(ElseFlowController.class);
+			WorkUnit workUnit_08 = new WorkUnit(flowController_08);
+
+			workUnit_08.setReturnAtCompletion(true);
+			workUnit_08.getReturnedVariables().add("counter_i");
+			workUnit_08.getReturnedVariables().add("counter_j");
+
+			workUnit_04.addChildWorkUnit(workUnit_08);
+
+			Command<Object> command_09 = serviceLocator.getInstance(ConsolePrinterCommand.class);
+			command_09.getParameters().add("counter_j");
+			workUnit_08.addChildWorkUnit(new WorkUnit(command_09));
+
+			workflow3 = workflow;
+    	}
     }
 
 	@Test
@@ -307,4 +388,39 @@ public class FlowControllerTest
 			System.out.println("\n******************************************************\n");
 		}
 	}
+
+	@Test
+	public void IfElseFlowController_ReturningWithinIfAndElseNestedInWhileLoops_ResumingAfterEachReturn()
+	{
+		workflow = workflow3;
+
+		long workflowId = workUnitConfigurationDao.saveWorkflow(workflow);
+
+		System.out.println(workflowXmlUtilities.workflowToXml(workUnitConfigurationDao.retrieveConfigurationWorkflow(workflowId)));
+
+		TransactionData transactionData = new TransactionData();
+
+		Transaction transaction = null;
+
+		List<String> returnedCounters = new ArrayList<String>();
+
+		Conversation conversation = conversationFactory.startConversation(workflowId);
+
+		while ((transaction = conversation.startTransaction(transactionData)) != null)
+		{
+			List<TransactionResult<?>> transactionResults = transaction.execute();
+
+			if (transactionResults.size() == 2)
+			{
+				returnedCounters.add(transactionResults.get(0).getData() + "." + transactionResults.get(1).getData());
+			}
+
+			System.out.println("\nExecuted workflow:\n");
+			System.out.println(transaction.workflowToString());
+		}
+
+		System.out.println("\nTransaction result(s): counter_i.counter_j: " + returnedCounters);
+
+		assertEquals(Arrays.asList("1.1", "1.1", "1.2", "1.2", "1.3", "1.3", "2.1", "2.1", "2.2", "2.2", "2.3", "2.3"), returnedCounters);
+	}
 }
\ No newline at end of file
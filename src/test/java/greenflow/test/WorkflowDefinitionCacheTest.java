@@ -0,0 +1,118 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import greenflow.command.Command;
+import greenflow.flowcontroller.FlowController;
+import greenflow.flowcontroller.WhileFlowController;
+import greenflow.persistence.WorkflowConfigurationDao;
+import greenflow.persistence.WorkflowDefinitionCache;
+import greenflow.predicate.Predicate;
+import greenflow.test.command.ConsolePrinterCommand;
+import greenflow.test.command.IntegerIncrementerCommand;
+import greenflow.test.predicate.IntegerLessThanPredicate;
+import greenflow.utilities.DefaultServiceLocator;
+import greenflow.workflow.Workflow;
+import greenflow.workunit.WorkUnit;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({"classpath:spring-module.xml"})
+public class WorkflowDefinitionCacheTest
+{
+	private Workflow workflow;
+
+	@Autowired
+	private WorkflowConfigurationDao workUnitConfigurationDao;
+
+	@Autowired
+	private WorkflowDefinitionCache workflowDefinitionCache;
+
+	@Autowired
+	private DefaultServiceLocator serviceLocator;
+
+	@Before
+	public void setUp()
+	{
+		workflow = new Workflow(null);
+
+		WorkUnit rootWorkUnit = workflow.getRootWorkUnit();
+
+		rootWorkUnit.getDeclaredVariables().put("counter", 0);
+
+		rootWorkUnit.setReturnAtCompletion(true);
+		rootWorkUnit.getReturnedVariables().add("counter");
+
+		Predicate predicate_01 = serviceLocator.getInstance(IntegerLessThanPredicate.class);
+		predicate_01.getParameters().add("counter");
+		predicate_01.getParameters().add("'3'");
+		FlowController flowController_01 = serviceLocator.getInstance(WhileFlowController.class);
+		flowController_01.setPredicate(predicate_01);
+		WorkUnit workUnit_01 = new WorkUnit(flowController_01);
+
+		rootWorkUnit.addChildWorkUnit(workUnit_01);
+
+		Command<Integer> command_02 = serviceLocator.getInstance(IntegerIncrementerCommand.class);
+		command_02.getParameters().add("counter");
+		command_02.setAssignTo("counter");
+		workUnit_01.addChildWorkUnit(new WorkUnit(command_02));
+
+		Command<Object> command_03 = serviceLocator.getInstance(ConsolePrinterCommand.class);
+		command_03.getParameters().add("counter");
+		workUnit_01.addChildWorkUnit(new WorkUnit(command_03));
+	}
+
+	@Test
+	public void WorkflowDefinitionCache_LoadingSavedWorkflowTwice_SharingCachedDefinitionAcrossInstances()
+	{
+		long workflowId = workUnitConfigurationDao.saveWorkflow(workflow);
+
+		Workflow definition = workflowDefinitionCache.getDefinition(workflowId);
+
+		System.out.println("Cached definition (version " + definition.getVersion() + "):\n");
+		System.out.println(definition);
+
+		assertSame(definition, workflowDefinitionCache.getDefinition(workflowId));
+
+		Workflow instance_01 = workflowDefinitionCache.getWorkflow(workflowId, null);
+		Workflow instance_02 = workflowDefinitionCache.getWorkflow(workflowId, null);
+
+		assertNotSame(instance_01, instance_02);
+		assertSame(definition.getRootWorkUnit(), instance_01.getRootWorkUnit());
+		assertSame(definition.getRootWorkUnit(), instance_02.getRootWorkUnit());
+
+		instance_01.getVariables(instance_01.getRootWorkUnit()).put("counter", 5);
+
+		assertEquals(5, instance_01.getVariables(instance_01.getRootWorkUnit()).get("counter"));
+		assertEquals("0", instance_02.getVariables(instance_02.getRootWorkUnit()).get("counter"));
+		assertEquals("0", definition.getRootWorkUnit().getDeclaredVariables().get("counter"));
+
+		workflowDefinitionCache.invalidate(workflowId);
+
+		assertNotSame(definition, workflowDefinitionCache.getDefinition(workflowId));
+	}
+}
\ No newline at end of file
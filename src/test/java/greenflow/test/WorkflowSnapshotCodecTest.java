@@ -0,0 +1,166 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import greenflow.command.Command;
+import greenflow.flowcontroller.FlowController;
+import greenflow.flowcontroller.IfFlowController;
+import greenflow.flowcontroller.WhileFlowController;
+import greenflow.persistence.WorkflowConfigurationDao;
+import greenflow.persistence.WorkflowSnapshotCodec;
+import greenflow.predicate.Predicate;
+import greenflow.predicate.relation.AndPredicate;
+import greenflow.predicate.relation.PredicateArray;
+import greenflow.test.command.ConsolePrinterCommand;
+import greenflow.test.command.IntegerIncrementerCommand;
+import greenflow.test.predicate.IntegerLessThanPredicate;
+import greenflow.utilities.DefaultServiceLocator;
+import greenflow.workflow.Workflow;
+import greenflow.workunit.WorkUnit;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration({"classpath:spring-module.xml"})
+public class WorkflowSnapshotCodecTest
+{
+	private Workflow workflow;
+
+	@Autowired
+	private WorkflowConfigurationDao workUnitConfigurationDao;
+
+	@Autowired
+	private WorkflowSnapshotCodec workflowSnapshotCodec;
+
+	@Autowired
+	private DefaultServiceLocator serviceLocator;
+
+	@Before
+	public void setUp()
+	{
+		workflow = new Workflow(null);
+
+		WorkUnit rootWorkUnit = workflow.getRootWorkUnit();
+
+		rootWorkUnit.getDeclaredVariables().put("counter", 0);
+		rootWorkUnit.getDeclaredVariables().put("label", null);
+
+		rootWorkUnit.setReturnAtCompletion(true);
+		rootWorkUnit.getReturnedVariables().add("counter");
+
+		Predicate predicate_01 = serviceLocator.getInstance(IntegerLessThanPredicate.class);
+		predicate_01.getParameters().add("counter");
+		predicate_01.getParameters().add("'3'");
+		FlowController flowController_01 = serviceLocator.getInstance(WhileFlowController.class);
+		flowController_01.setPredicate(predicate_01);
+		WorkUnit workUnit_01 = new WorkUnit(flowController_01);
+
+		rootWorkUnit.addChildWorkUnit(workUnit_01);
+
+		Command<Integer> command_02 = serviceLocator.getInstance(IntegerIncrementerCommand.class);
+		command_02.getParameters().add("counter");
+		command_02.setAssignTo("counter");
+		workUnit_01.addChildWorkUnit(new WorkUnit(command_02));
+
+		Predicate predicate_03 = serviceLocator.getInstance(IntegerLessThanPredicate.class);
+		predicate_03.getParameters().add("counter");
+		predicate_03.getParameters().add("'2'");
+		Predicate predicate_04 = serviceLocator.getInstance(IntegerLessThanPredicate.class);
+		predicate_04.getParameters().add("counter");
+		predicate_04.getParameters().add("'5'");
+		FlowController flowController_03 = serviceLocator.getInstance(IfFlowController.class);
+		flowController_03.setPredicate(serviceLocator.getInstance(AndPredicate.class, new PredicateArray(new Predicate[] {predicate_03, predicate_04})));
+		WorkUnit workUnit_03 = new WorkUnit(flowController_03);
+
+		workUnit_01.addChildWorkUnit(workUnit_03);
+
+		Command<Object> command_04 = serviceLocator.getInstance(ConsolePrinterCommand.class);
+		command_04.getParameters().add("counter");
+		workUnit_03.addChildWorkUnit(new WorkUnit(command_04));
+	}
+
+	@Test
+	public void WorkflowSnapshotCodec_LoadingSavedWorkflow_DecodingSameDefinitionFromSnapshot()
+	{
+		long workflowId = workUnitConfigurationDao.saveWorkflow(workflow);
+
+		Workflow decoded = workflowSnapshotCodec.decode(ByteBuffer.wrap(workflowSnapshotCodec.encode(workflow)), null);
+
+		assertWorkUnitsEqual(workflow.getAllWorkUnits(), decoded.getAllWorkUnits());
+
+		Workflow loaded = workUnitConfigurationDao.retrieveConfigurationWorkflow(workflowId);
+
+		System.out.println("Workflow loaded from snapshot:\n");
+		System.out.println(loaded);
+
+		assertEquals(workflowId, loaded.getId());
+		assertEquals(workflow.getName(), loaded.getName());
+		assertWorkUnitsEqual(workflow.getAllWorkUnits(), loaded.getAllWorkUnits());
+	}
+
+	private void assertWorkUnitsEqual(List<WorkUnit> expected, List<WorkUnit> actual)
+	{
+		assertEquals(expected.size(), actual.size());
+
+		for (int i=0; i<expected.size(); i++)
+		{
+			WorkUnit expectedWorkUnit = expected.get(i);
+			WorkUnit actualWorkUnit = actual.get(i);
+
+			assertNotSame(expectedWorkUnit, actualWorkUnit);
+			assertEquals(expectedWorkUnit.getId(), actualWorkUnit.getId());
+			assertEquals(expectedWorkUnit.getBreadcrumbId(), actualWorkUnit.getBreadcrumbId());
+			assertEquals(expectedWorkUnit.isReturnAtCompletion(), actualWorkUnit.isReturnAtCompletion());
+			assertEquals(expectedWorkUnit.getDeclaredVariables().keySet(), actualWorkUnit.getDeclaredVariables().keySet());
+			assertEquals(expectedWorkUnit.getReturnedVariables(), actualWorkUnit.getReturnedVariables());
+
+			if (expectedWorkUnit.isCommand())
+			{
+				assertEquals(expectedWorkUnit.getCommand().getClass(), actualWorkUnit.getCommand().getClass());
+				assertEquals(expectedWorkUnit.getCommand().getParameters(), actualWorkUnit.getCommand().getParameters());
+				assertEquals(expectedWorkUnit.getCommand().getAssignTo(), actualWorkUnit.getCommand().getAssignTo());
+			}
+			else if (expectedWorkUnit.isFlowController())
+			{
+				assertEquals(expectedWorkUnit.getFlowController().getClass(), actualWorkUnit.getFlowController().getClass());
+
+				List<Predicate> expectedPredicates = expectedWorkUnit.getFlowController().getPredicate().getDescendants();
+				List<Predicate> actualPredicates = actualWorkUnit.getFlowController().getPredicate().getDescendants();
+
+				assertEquals(expectedPredicates.size(), actualPredicates.size());
+
+				for (int j=0; j<expectedPredicates.size(); j++)
+				{
+					assertEquals(expectedPredicates.get(j).getId(), actualPredicates.get(j).getId());
+					assertEquals(expectedPredicates.get(j).getClass(), actualPredicates.get(j).getClass());
+					assertEquals(expectedPredicates.get(j).getParameters(), actualPredicates.get(j).getParameters());
+				}
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+/*
+   Copyright (c) 2018 GreenGene. (https://github.com/greengene/) All Rights Reserved.
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+
+package greenflow.test.command;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import greenflow.command.Command;
+import greenflow.command.CommandResult;
+
+@Component
+@Scope("prototype")
+@Lazy
+public class FailingCommand extends Command<Object>
+{
+	@Override
+	public CommandResult<Object> execute()
+	{
+		if (getWrapperWorkUnit().getWorkflow().getWorkflowContext().getTransaction().getTransactionData().getTransactionData() < 0)
+		{
+			throw new IllegalStateException("Failing on request of transaction ordinal: " + getWrapperWorkUnit().getWorkflow().getWorkflowContext().getTransaction().getTransactionOrdinal());
+		}
+
+		return new CommandResult<Object>() {
+			public Object getData()
+			{
+				return null;
+			}
+		};
+	}
+
+	@Override
+	public String getSymbolicName()
+	{
+		return "failing-command";
+	}
+}
\ No newline at end of file
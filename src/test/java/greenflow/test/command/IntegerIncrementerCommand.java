@@ -41,7 +41,7 @@ public class IntegerIncrementerCommand extends Command<Integer>
 
 		int parameterIndex = 0;
 
-		int input = Integer.parseInt(getWrapperWorkUnit().lookUpVariableValue(getParameters().get(parameterIndex++)).toString());
+		int input = toInt(getWrapperWorkUnit().lookUpVariableValue(getParameters().get(parameterIndex++)));
 
 		final int result = input + 1;
 
@@ -53,6 +53,11 @@ public class IntegerIncrementerCommand extends Command<Integer>
 		};
 	}
 
+	private int toInt(Object value)
+	{
+		return (value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString()));
+	}
+
 	@Override
 	public String getSymbolicName()
 	{
@@ -40,12 +40,17 @@ public class IntegerLessThanPredicate extends Predicate
 
 		int parameterIndex = 0;
 
-		int input = Integer.parseInt(getWrapperFlowController().getWrapperWorkUnit().lookUpVariableValue(getParameters().get(parameterIndex++)).toString());
+		int input = toInt(getWrapperFlowController().getWrapperWorkUnit().lookUpVariableValue(getParameters().get(parameterIndex++)));
 
-		int upperBound = Integer.parseInt(getWrapperFlowController().getWrapperWorkUnit().lookUpVariableValue(getParameters().get(parameterIndex++)).toString());
+		int upperBound = toInt(getWrapperFlowController().getWrapperWorkUnit().lookUpVariableValue(getParameters().get(parameterIndex++)));
 
 		return input < upperBound;
 	}
+
+	private int toInt(Object value)
+	{
+		return (value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString()));
+	}
 
 	@Override
 	public String getSymbolicName()